@@ -0,0 +1,4 @@
+package Calculator_Team3.jmh_generated;
+public class ColumnKernelBenchmark_jmhType extends ColumnKernelBenchmark_jmhType_B3 {
+}
+
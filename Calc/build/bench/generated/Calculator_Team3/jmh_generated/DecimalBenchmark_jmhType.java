@@ -0,0 +1,4 @@
+package Calculator_Team3.jmh_generated;
+public class DecimalBenchmark_jmhType extends DecimalBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package Calculator_Team3.jmh_generated;
+public class EditSessionBenchmark_jmhType extends EditSessionBenchmark_jmhType_B3 {
+}
+
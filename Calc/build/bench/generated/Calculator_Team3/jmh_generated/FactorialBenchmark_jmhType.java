@@ -0,0 +1,4 @@
+package Calculator_Team3.jmh_generated;
+public class FactorialBenchmark_jmhType extends FactorialBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package Calculator_Team3.jmh_generated;
+public class FormatValueBenchmark_jmhType extends FormatValueBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package Calculator_Team3.jmh_generated;
+public class HistoryBenchmark_jmhType extends HistoryBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package Calculator_Team3.jmh_generated;
+public class PrimeMultiBenchmark_jmhType extends PrimeMultiBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package Calculator_Team3.jmh_generated;
+public class TabulatorBenchmark_jmhType extends TabulatorBenchmark_jmhType_B3 {
+}
+
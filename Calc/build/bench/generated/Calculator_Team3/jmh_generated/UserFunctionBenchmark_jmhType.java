@@ -0,0 +1,4 @@
+package Calculator_Team3.jmh_generated;
+public class UserFunctionBenchmark_jmhType extends UserFunctionBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package Calculator_Team3.jmh_generated;
+public class ValueMathBenchmark_jmhType extends ValueMathBenchmark_jmhType_B3 {
+}
+
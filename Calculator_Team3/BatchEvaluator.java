@@ -0,0 +1,175 @@
+package Calculator_Team3;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates large batches of independent expressions in parallel on a fork/join pool.
+ * Identical expressions are evaluated once. Every expression starts from the same ans
+ * value and no other variable or function, so a store or a definition in one expression
+ * does not affect the others, and the results do not depend on how the batch is split
+ * across threads.
+ */
+public class BatchEvaluator {
+    // Expressions per task; large enough that splitting costs little next to evaluating
+    private static final int CHUNK_SIZE = 512;
+
+    private final CalculatorEngine engine;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a batch evaluator running on the common fork/join pool.
+     * @param engine the engine evaluating the expressions
+     */
+    public BatchEvaluator(CalculatorEngine engine) {
+        this(engine, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a batch evaluator running on the given pool.
+     * @param engine the engine evaluating the expressions
+     * @param pool the pool running the evaluation tasks
+     */
+    public BatchEvaluator(CalculatorEngine engine, ForkJoinPool pool) {
+        this.engine = engine;
+        this.pool = pool;
+    }
+
+    /**
+     * Evaluates expressions with ans set to 0.
+     * @param expressions the expressions to evaluate
+     * @param radix the radix of the numbers (2, 8, 10 or 16)
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @return the results in input order
+     * @throws NullPointerException if an expression is null
+     */
+    public BatchResult evaluate(List<String> expressions, int radix, boolean isDegOrRad) {
+        return evaluate(expressions.toArray(new String[0]), radix, isDegOrRad, 0);
+    }
+
+    /**
+     * Evaluates expressions in parallel.
+     * @param expressions the expressions to evaluate
+     * @param radix the radix of the numbers (2, 8, 10 or 16)
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @param ans the value of ans at the start of every expression
+     * @return the results in input order
+     * @throws NullPointerException if an expression is null
+     */
+    public BatchResult evaluate(String[] expressions, int radix, boolean isDegOrRad, double ans) {
+        for (int i = 0; i < expressions.length; i++) {
+            if (expressions[i] == null) {
+                throw new NullPointerException("expression " + i + " is null");
+            }
+        }
+        Batch batch = new Batch(expressions, radix, isDegOrRad, ans);
+        pool.invoke(new EvaluateTask(batch, 0, expressions.length));
+        pool.invoke(new CopyTask(batch, 0, expressions.length));
+        return new BatchResult(batch.values, batch.errors, batch.distinct.get());
+    }
+
+    // Shared state of one batch
+    private final class Batch {
+        final String expressions[];
+        final int radix;
+        final boolean isDegOrRad;
+        final double ans;
+        final double values[];
+        final String errors[];
+        // First index of each distinct expression; -1 in leaders marks an evaluated expression
+        final ConcurrentHashMap<String, Integer> firstIndex;
+        final int leaders[];
+        final AtomicInteger distinct = new AtomicInteger();
+
+        Batch(String[] expressions, int radix, boolean isDegOrRad, double ans) {
+            this.expressions = expressions;
+            this.radix = radix;
+            this.isDegOrRad = isDegOrRad;
+            this.ans = ans;
+            this.values = new double[expressions.length];
+            this.errors = new String[expressions.length];
+            this.firstIndex = new ConcurrentHashMap<String, Integer>(Math.max(16, expressions.length / 4));
+            this.leaders = new int[expressions.length];
+        }
+
+        // Evaluates the expressions not seen before and records the leader of the others
+        void evaluate(int from, int to) {
+            EvaluationContext context = new EvaluationContext(radix, isDegOrRad);
+            for (int i = from; i < to; i++) {
+                String expression = expressions[i];
+                Integer first = firstIndex.putIfAbsent(expression, i);
+                if (first != null) {
+                    leaders[i] = first;
+                    continue;
+                }
+                leaders[i] = -1;
+                distinct.incrementAndGet();
+                try {
+                    context.reset(ans); // The context is reused, but what the last expression defined is not
+                    values[i] = engine.evaluate(expression, context);
+                    errors[i] = context.getError();
+                } catch (RuntimeException e) {
+                    errors[i] = "unexpected " + e;
+                }
+            }
+        }
+
+        // Copies the results of the distinct expressions to their duplicates
+        void copy(int from, int to) {
+            for (int i = from; i < to; i++) {
+                int leader = leaders[i];
+                if (leader >= 0) {
+                    values[i] = values[leader];
+                    errors[i] = errors[leader];
+                }
+            }
+        }
+    }
+
+    private static final class EvaluateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Batch batch;
+        private final int from, to;
+
+        EvaluateTask(Batch batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                batch.evaluate(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new EvaluateTask(batch, from, middle), new EvaluateTask(batch, middle, to));
+            }
+        }
+    }
+
+    private static final class CopyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Batch batch;
+        private final int from, to;
+
+        CopyTask(Batch batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE * 16) {
+                batch.copy(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CopyTask(batch, from, middle), new CopyTask(batch, middle, to));
+            }
+        }
+    }
+}
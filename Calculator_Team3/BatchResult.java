@@ -0,0 +1,75 @@
+package Calculator_Team3;
+
+/**
+ * The results of a batch evaluation, in the order of the input expressions.
+ * Values and errors are kept in two arrays instead of one object per item,
+ * so results of very large batches stay compact.
+ */
+public final class BatchResult {
+    private final double values[];
+    private final String errors[];
+    private final int distinctCount;
+
+    BatchResult(double[] values, String[] errors, int distinctCount) {
+        this.values = values;
+        this.errors = errors;
+        this.distinctCount = distinctCount;
+    }
+
+    /**
+     * Gets the number of evaluated expressions.
+     * @return the batch size
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Gets the result of an expression.
+     * @param index the position of the expression in the batch
+     * @return the result, or an unspecified value if the expression has an error
+     */
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Checks if evaluating an expression failed.
+     * @param index the position of the expression in the batch
+     * @return true if the expression has an error
+     */
+    public boolean isError(int index) {
+        return errors[index] != null;
+    }
+
+    /**
+     * Gets the error of an expression.
+     * @param index the position of the expression in the batch
+     * @return the error message, or null if the evaluation succeeded
+     */
+    public String getError(int index) {
+        return errors[index];
+    }
+
+    /**
+     * Gets the number of expressions that failed.
+     * @return the error count
+     */
+    public int getErrorCount() {
+        int count = 0;
+        for (String error : errors) {
+            if (error != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of distinct expressions, each of which was evaluated once.
+     * @return the distinct expression count
+     */
+    public int getDistinctCount() {
+        return distinctCount;
+    }
+}
@@ -0,0 +1,459 @@
+package Calculator_Team3;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Arrays;
+
+/**
+ * Elementary functions of {@link BigDecimal} numbers to the precision of a {@link MathContext},
+ * for the decimal arithmetic of {@link CalculatorEngine}. Each function works with guard digits
+ * and rounds its result once, so results are correct to the last digit except in rare cases
+ * very close to halfway between two results. Exact results, such as {@code log(1000)},
+ * {@code sqrt(2.25)} or {@code sin(30°)}, come out exact.
+ * Arguments for which a function has no real value throw an {@link ArithmeticException}
+ * describing the error.
+ * Every term of a series and every step of an iteration is a checkpoint, charged as one
+ * operation per {@value #DIGITS_PER_OPERATION} digits of working precision, so that the
+ * budget of the evaluation and interruption stop long computations.
+ */
+final class BigMath {
+    private static final int GUARD_DIGITS = 10;
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+    private static final BigDecimal TEN = BigDecimal.TEN;
+    private static final BigDecimal NINETY = BigDecimal.valueOf(90);
+    private static final BigDecimal HALF_TURN = BigDecimal.valueOf(180);
+    private static final BigDecimal FULL_TURN = BigDecimal.valueOf(360);
+    private static final BigDecimal MAX_EXPONENT = BigDecimal.valueOf(1000000000);
+    static final int DIGITS_PER_OPERATION = 16;
+    // Factorials up to this are rounded from the exact product, which has at most 2568 digits
+    private static final int EXACT_FACTORIAL = 1000;
+
+    // The most precise values computed so far, which are rounded for lower precisions
+    private static volatile BigDecimal pi = new BigDecimal("3.14159265358979323846264338327950288419716939937511");
+    private static volatile BigDecimal ln10 = new BigDecimal("2.30258509299404568401799145468436420760110148862877");
+    // The Bernoulli numbers B0, B1, B2, ... computed so far, as reduced fractions {numerator, denominator}
+    private static volatile BigInteger bernoulli[][] = { { BigInteger.ONE, BigInteger.ONE } };
+
+    private BigMath() {
+    }
+
+    /**
+     * Checks for interruption and charges the budget for an operation on numbers of a precision.
+     * @param mc the precision of the operation
+     * @throws java.util.concurrent.CancellationException if the current thread is interrupted
+     * @throws BudgetExceededException if the evaluation exceeds its budget
+     */
+    static void checkpoint(MathContext mc) {
+        MathFunctions.checkpoint(1 + mc.getPrecision() / DIGITS_PER_OPERATION);
+    }
+
+    /**
+     * Gets pi to a precision.
+     * @param mc the precision of the result
+     * @return pi
+     */
+    static BigDecimal pi(MathContext mc) {
+        BigDecimal value = pi;
+        if (value.precision() < mc.getPrecision() + GUARD_DIGITS) {
+            // Machin's formula: pi = 16 atan(1/5) - 4 atan(1/239)
+            MathContext work = new MathContext(mc.getPrecision() + 2 * GUARD_DIGITS);
+            value = atanInverse(5, work).multiply(BigDecimal.valueOf(16)).subtract(
+                    atanInverse(239, work).multiply(BigDecimal.valueOf(4)), work);
+            pi = value;
+        }
+        return value.round(mc);
+    }
+
+    // Computes atan(1/n) with its Taylor series, which converges fast for large n
+    private static BigDecimal atanInverse(int n, MathContext mc) {
+        BigDecimal square = BigDecimal.valueOf((long) n * n);
+        BigDecimal power = BigDecimal.ONE.divide(BigDecimal.valueOf(n), mc); // 1 / n^(2k+1)
+        BigDecimal sum = power;
+        for (int k = 1;; k++) {
+            checkpoint(mc);
+            power = power.divide(square, mc);
+            BigDecimal term = power.divide(BigDecimal.valueOf(2 * k + 1), mc);
+            BigDecimal next = (k & 1) == 0 ? sum.add(term, mc) : sum.subtract(term, mc);
+            if (next.compareTo(sum) == 0) {
+                return next;
+            }
+            sum = next;
+        }
+    }
+
+    /**
+     * Gets Euler's number e to a precision.
+     * @param mc the precision of the result
+     * @return e
+     */
+    static BigDecimal e(MathContext mc) {
+        return exp(BigDecimal.ONE, mc);
+    }
+
+    /**
+     * Computes the exponential function.
+     * @param x the exponent
+     * @param mc the precision of the result
+     * @return e^x
+     * @throws ArithmeticException if the result is too large or too small for a BigDecimal
+     */
+    static BigDecimal exp(BigDecimal x, MathContext mc) {
+        if (x.signum() == 0) {
+            return BigDecimal.ONE;
+        }
+        if (x.abs().compareTo(MAX_EXPONENT) > 0) {
+            throw new ArithmeticException(x.signum() > 0 ? "overflow" : "underflow");
+        }
+        // e^x = (e^(x / 2^k))^(2^k), with |x / 2^k| < 1/2 so that the series converges fast;
+        // squaring k times multiplies the error by 2^k, so each halving needs a third of a digit more
+        int k = Math.max(0, x.toBigInteger().bitLength() + 1);
+        MathContext work = new MathContext(mc.getPrecision() + GUARD_DIGITS + k / 3 + 1);
+        BigDecimal y = x.divide(TWO.pow(k), work);
+        BigDecimal sum = BigDecimal.ONE, term = BigDecimal.ONE;
+        for (int n = 1;; n++) {
+            checkpoint(work);
+            term = term.multiply(y).divide(BigDecimal.valueOf(n), work);
+            BigDecimal next = sum.add(term, work);
+            if (next.compareTo(sum) == 0) {
+                break;
+            }
+            sum = next;
+        }
+        for (int i = 0; i < k; i++) {
+            checkpoint(work);
+            sum = sum.multiply(sum, work);
+        }
+        return sum.round(mc);
+    }
+
+    /**
+     * Computes the natural logarithm.
+     * @param x the argument
+     * @param mc the precision of the result
+     * @return ln(x)
+     * @throws ArithmeticException if x is not positive
+     */
+    static BigDecimal ln(BigDecimal x, MathContext mc) {
+        if (x.signum() <= 0) {
+            throw new ArithmeticException("ln of a non-positive number");
+        }
+        if (x.compareTo(BigDecimal.ONE) == 0) {
+            return BigDecimal.ZERO;
+        }
+        MathContext work = new MathContext(mc.getPrecision() + GUARD_DIGITS);
+        // x = m * 10^e with m between 10^-1/2 and 10^1/2, so ln(x) of x near 1 loses no digits
+        int e = x.precision() - x.scale() - 1;
+        BigDecimal m = x.movePointLeft(e);
+        if (m.compareTo(BigDecimal.valueOf(3.16)) > 0) {
+            m = m.movePointLeft(1);
+            e++;
+        }
+        BigDecimal result = lnNear1(m, work);
+        if (e != 0) {
+            result = result.add(ln10(work).multiply(BigDecimal.valueOf(e)), work);
+        }
+        return result.round(mc);
+    }
+
+    // Solves e^y = m with Halley's method, which triples the correct digits of a double estimate at each step
+    private static BigDecimal lnNear1(BigDecimal m, MathContext mc) {
+        BigDecimal y = new BigDecimal(Math.log(m.doubleValue()));
+        for (int digits = 15; digits < 3 * mc.getPrecision(); digits *= 3) {
+            BigDecimal power = exp(y, mc);
+            y = y.add(TWO.multiply(m.subtract(power)).divide(m.add(power), mc), mc);
+        }
+        return y;
+    }
+
+    // Gets ln(10) to a precision
+    private static BigDecimal ln10(MathContext mc) {
+        BigDecimal value = ln10;
+        if (value.precision() < mc.getPrecision() + GUARD_DIGITS) {
+            value = lnNear1(TEN, new MathContext(mc.getPrecision() + 2 * GUARD_DIGITS));
+            ln10 = value;
+        }
+        return value.round(mc);
+    }
+
+    /**
+     * Computes the base-10 logarithm, exactly for powers of ten.
+     * @param x the argument
+     * @param mc the precision of the result
+     * @return log(x)
+     * @throws ArithmeticException if x is not positive
+     */
+    static BigDecimal log10(BigDecimal x, MathContext mc) {
+        if (x.signum() <= 0) {
+            throw new ArithmeticException("log of a non-positive number");
+        }
+        BigDecimal stripped = x.stripTrailingZeros();
+        if (stripped.unscaledValue().equals(BigInteger.ONE)) {
+            return BigDecimal.valueOf(-stripped.scale());
+        }
+        MathContext work = new MathContext(mc.getPrecision() + GUARD_DIGITS);
+        return ln(x, work).divide(ln10(work), mc);
+    }
+
+    /**
+     * Computes a power. Integer exponents are exact as long as the result fits the precision.
+     * @param x the base
+     * @param y the exponent
+     * @param mc the precision of the result
+     * @return x^y
+     * @throws ArithmeticException if x is 0 and y negative, or x is negative and y not an integer
+     */
+    static BigDecimal pow(BigDecimal x, BigDecimal y, MathContext mc) {
+        if (isInteger(y) && y.abs().compareTo(MAX_EXPONENT) < 0) {
+            if (x.signum() == 0 && y.signum() < 0) {
+                throw new ArithmeticException("division by zero");
+            }
+            int n = y.intValueExact();
+            return x.pow(n, new MathContext(mc.getPrecision() + GUARD_DIGITS)).round(mc);
+        }
+        if (x.signum() < 0) {
+            throw new ArithmeticException("power of a negative number needs an integer exponent");
+        }
+        if (x.signum() == 0) {
+            if (y.signum() < 0) {
+                throw new ArithmeticException("division by zero");
+            }
+            return BigDecimal.ZERO;
+        }
+        if (x.compareTo(BigDecimal.ONE) == 0) {
+            return BigDecimal.ONE;
+        }
+        // x^y = e^(y ln x); the error of y ln x grows with its integer digits
+        double estimate = y.doubleValue() * ln(x, MathContext.DECIMAL64).doubleValue();
+        if (!(Math.abs(estimate) < MAX_EXPONENT.doubleValue())) {
+            throw new ArithmeticException(estimate > 0 ? "overflow" : "underflow");
+        }
+        int digits = (int) Math.log10(Math.abs(estimate) + 1) + 1;
+        MathContext work = new MathContext(mc.getPrecision() + GUARD_DIGITS + digits);
+        return exp(y.multiply(ln(x, work), work), mc);
+    }
+
+    /**
+     * Computes the factorial of a non-negative integer. Up to {@value #EXACT_FACTORIAL}, or
+     * the precision if it is larger, the exact product is rounded. Above, n! has many more
+     * digits than the precision, so it is computed from Stirling's series for ln n!, whose
+     * terms fall by a factor of at least 40 each once n is larger than the precision; this
+     * takes time that depends on the precision, not on n.
+     * @param n the number, a non-negative integer
+     * @param mc the precision of the result
+     * @return n!
+     * @throws ArithmeticException if n! is too large for a BigDecimal, from about 6 * 10^7 on
+     */
+    static BigDecimal factorial(BigDecimal n, MathContext mc) {
+        if (n.compareTo(BigDecimal.valueOf(Math.max(EXACT_FACTORIAL, mc.getPrecision()))) <= 0) {
+            return new BigDecimal(Factorial.exact(n.intValueExact()), mc);
+        }
+        double estimate = Factorial.logGamma(n.doubleValue() + 1);
+        if (!(estimate < MAX_EXPONENT.doubleValue())) {
+            throw new ArithmeticException("overflow");
+        }
+        // The error of ln n! becomes the relative error of n!, so it needs as many more digits
+        // as ln n! has integer digits
+        int digits = (int) Math.log10(estimate + 1) + 1;
+        MathContext work = new MathContext(mc.getPrecision() + GUARD_DIGITS + digits);
+        // ln n! = (n + 1/2) ln n - n + ln(2 pi) / 2 + sum of B2k / (2k (2k - 1) n^(2k - 1))
+        BigDecimal sum = n.add(BigDecimal.valueOf(0.5)).multiply(ln(n, work), work).subtract(n, work)
+                .add(ln(pi(work).multiply(TWO), work).divide(TWO, work), work);
+        BigDecimal smallest = BigDecimal.ONE.movePointLeft(mc.getPrecision() + GUARD_DIGITS);
+        BigDecimal square = n.multiply(n);
+        BigDecimal power = n; // n^(2k - 1)
+        for (int k = 1;; k++) {
+            checkpoint(work);
+            BigInteger b[] = bernoulli(2 * k);
+            BigDecimal divisor = new BigDecimal(b[1].multiply(BigInteger.valueOf(2L * k * (2 * k - 1))))
+                    .multiply(power);
+            BigDecimal term = new BigDecimal(b[0]).divide(divisor, work);
+            if (term.abs().compareTo(smallest) < 0) {
+                break;
+            }
+            sum = sum.add(term, work);
+            power = power.multiply(square);
+        }
+        return exp(sum, mc);
+    }
+
+    // Gets a Bernoulli number as a fraction, computing the missing ones from
+    // B_m = -1/(m + 1) * sum of C(m + 1, j) B_j for j < m
+    private static BigInteger[] bernoulli(int m) {
+        BigInteger known[][] = bernoulli;
+        if (m < known.length) {
+            return known[m];
+        }
+        synchronized (BigMath.class) {
+            known = bernoulli;
+            if (m < known.length) {
+                return known[m];
+            }
+            BigInteger grown[][] = Arrays.copyOf(known, Math.max(m + 1, 2 * known.length));
+            for (int i = known.length; i < grown.length; i++) {
+                if (i > 1 && i % 2 == 1) {
+                    grown[i] = new BigInteger[] { BigInteger.ZERO, BigInteger.ONE }; // Odd ones above B1 are 0
+                    continue;
+                }
+                BigInteger numerator = BigInteger.ZERO, denominator = BigInteger.ONE;
+                MathFunctions.checkpoint(i);
+                BigInteger binomial = BigInteger.ONE; // C(i + 1, j)
+                for (int j = 0; j < i; j++) {
+                    BigInteger b[] = grown[j];
+                    if (b[0].signum() != 0) {
+                        numerator = numerator.multiply(b[1]).add(binomial.multiply(b[0]).multiply(denominator));
+                        denominator = denominator.multiply(b[1]);
+                        BigInteger gcd = numerator.gcd(denominator);
+                        numerator = numerator.divide(gcd);
+                        denominator = denominator.divide(gcd);
+                    }
+                    binomial = binomial.multiply(BigInteger.valueOf(i + 1 - j)).divide(BigInteger.valueOf(j + 1));
+                }
+                denominator = denominator.multiply(BigInteger.valueOf(i + 1));
+                BigInteger gcd = numerator.gcd(denominator);
+                grown[i] = new BigInteger[] { numerator.negate().divide(gcd), denominator.divide(gcd) };
+            }
+            bernoulli = grown;
+            return grown[m];
+        }
+    }
+
+    /**
+     * Computes the sine of an angle, exactly at multiples of 90° in degrees.
+     * @param x the angle
+     * @param isDegOrRad true if the angle is in degrees
+     * @param mc the precision of the result
+     * @return sin(x)
+     */
+    static BigDecimal sin(BigDecimal x, boolean isDegOrRad, MathContext mc) {
+        if (isDegOrRad) {
+            x = x.remainder(FULL_TURN);
+            if (x.remainder(NINETY).signum() == 0) {
+                return BigDecimal.valueOf(new int[] { 0, 1, 0, -1 }[quadrant(x)]);
+            }
+        }
+        MathContext work = workContext(x, mc);
+        BigDecimal r = reduce(isDegOrRad ? radians(x, work) : x, work);
+        // sin(r) = sin(pi - r) brings r within [-pi/2, pi/2], where the series does not cancel
+        BigDecimal halfPi = pi(work).divide(TWO, work);
+        if (r.compareTo(halfPi) > 0) {
+            r = pi(work).subtract(r, work);
+        } else if (r.compareTo(halfPi.negate()) < 0) {
+            r = pi(work).negate().subtract(r, work);
+        }
+        BigDecimal square = r.multiply(r, work).negate();
+        BigDecimal sum = r, term = r;
+        for (int n = 2;; n += 2) {
+            checkpoint(work);
+            term = term.multiply(square).divide(BigDecimal.valueOf((long) n * (n + 1)), work);
+            BigDecimal next = sum.add(term, work);
+            if (next.compareTo(sum) == 0) {
+                return next.round(mc);
+            }
+            sum = next;
+        }
+    }
+
+    /**
+     * Computes the cosine of an angle, exactly at multiples of 90° in degrees.
+     * @param x the angle
+     * @param isDegOrRad true if the angle is in degrees
+     * @param mc the precision of the result
+     * @return cos(x)
+     */
+    static BigDecimal cos(BigDecimal x, boolean isDegOrRad, MathContext mc) {
+        if (isDegOrRad) {
+            x = x.remainder(FULL_TURN);
+            if (x.remainder(NINETY).signum() == 0) {
+                return BigDecimal.valueOf(new int[] { 1, 0, -1, 0 }[quadrant(x)]);
+            }
+        }
+        MathContext work = workContext(x, mc);
+        BigDecimal r = reduce(isDegOrRad ? radians(x, work) : x, work).abs();
+        // cos(r) = -cos(pi - r) brings r within [0, pi/2]
+        boolean negate = r.compareTo(pi(work).divide(TWO, work)) > 0;
+        if (negate) {
+            r = pi(work).subtract(r, work);
+        }
+        BigDecimal square = r.multiply(r, work).negate();
+        BigDecimal sum = BigDecimal.ONE, term = BigDecimal.ONE;
+        for (int n = 1;; n += 2) {
+            checkpoint(work);
+            term = term.multiply(square).divide(BigDecimal.valueOf((long) n * (n + 1)), work);
+            BigDecimal next = sum.add(term, work);
+            if (next.compareTo(sum) == 0) {
+                return (negate ? next.negate() : next).round(mc);
+            }
+            sum = next;
+        }
+    }
+
+    /**
+     * Computes the tangent of an angle, exactly at multiples of 90° in degrees.
+     * @param x the angle
+     * @param isDegOrRad true if the angle is in degrees
+     * @param mc the precision of the result
+     * @return tan(x)
+     * @throws ArithmeticException if x is an odd multiple of 90°
+     */
+    static BigDecimal tan(BigDecimal x, boolean isDegOrRad, MathContext mc) {
+        if (isDegOrRad) {
+            x = x.remainder(FULL_TURN);
+            if (x.remainder(NINETY).signum() == 0) {
+                if ((quadrant(x) & 1) != 0) {
+                    throw new ArithmeticException("tan of an odd multiple of 90°");
+                }
+                return BigDecimal.ZERO;
+            }
+        }
+        MathContext work = workContext(x, mc);
+        return sin(x, isDegOrRad, work).divide(cos(x, isDegOrRad, work), mc);
+    }
+
+    /**
+     * Converts an angle from degrees to radians.
+     * @param x the angle in degrees
+     * @param mc the precision of the result
+     * @return the angle in radians
+     */
+    static BigDecimal radians(BigDecimal x, MathContext mc) {
+        MathContext work = new MathContext(mc.getPrecision() + GUARD_DIGITS);
+        return x.multiply(pi(work)).divide(HALF_TURN, mc);
+    }
+
+    /**
+     * Checks if a number is an integer.
+     * @param x the number
+     * @return true if x has no fractional part
+     */
+    static boolean isInteger(BigDecimal x) {
+        return x.signum() == 0 || x.scale() <= 0 || x.stripTrailingZeros().scale() <= 0;
+    }
+
+    // Gets the quadrant of an angle in degrees that is a multiple of 90, within (-360, 360)
+    private static int quadrant(BigDecimal degrees) {
+        return (degrees.divideToIntegralValue(NINETY).intValue() + 4) % 4;
+    }
+
+    // Reducing a large angle by multiples of 2 pi needs as many more digits as the angle has
+    private static MathContext workContext(BigDecimal x, MathContext mc) {
+        int digits = Math.max(0, x.precision() - x.scale());
+        return new MathContext(mc.getPrecision() + GUARD_DIGITS + digits);
+    }
+
+    // Reduces an angle in radians to [-pi, pi]
+    private static BigDecimal reduce(BigDecimal x, MathContext mc) {
+        BigDecimal pi = pi(mc);
+        if (x.abs().compareTo(pi) <= 0) {
+            return x;
+        }
+        BigDecimal twoPi = pi.multiply(TWO);
+        BigDecimal r = x.remainder(twoPi, mc);
+        if (r.compareTo(pi) > 0) {
+            r = r.subtract(twoPi, mc);
+        } else if (r.compareTo(pi.negate()) < 0) {
+            r = r.add(twoPi, mc);
+        }
+        return r;
+    }
+}
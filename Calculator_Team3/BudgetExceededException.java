@@ -0,0 +1,28 @@
+package Calculator_Team3;
+
+/**
+ * Thrown when an evaluation exceeds a limit of its {@link EvaluationBudget}.
+ */
+public class BudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final EvaluationBudget.Limit limit;
+
+    /**
+     * Creates the exception for an exceeded limit.
+     * @param limit the limit that was exceeded
+     * @param value the value of the limit
+     */
+    public BudgetExceededException(EvaluationBudget.Limit limit, long value) {
+        super("budget exceeded: " + limit.describe(value));
+        this.limit = limit;
+    }
+
+    /**
+     * Gets the limit that was exceeded.
+     * @return the limit
+     */
+    public EvaluationBudget.Limit getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,91 @@
+package Calculator_Team3;
+
+/**
+ * Tracks the resources used by one evaluation against its {@link EvaluationBudget}.
+ * The engine starts a meter for each evaluation in a context with a budget, and keeps it
+ * active on the evaluating thread, so that static code such as the loops of
+ * {@link MathFunctions} and {@link FormatValue} can charge it at their checkpoints.
+ */
+final class BudgetMeter {
+    private static final ThreadLocal<BudgetMeter> ACTIVE = new ThreadLocal<BudgetMeter>();
+
+    final int maxTokens; // Integer.MAX_VALUE without a limit
+    final int maxDepth; // Integer.MAX_VALUE without a limit
+    private final EvaluationBudget budget;
+    private final long maxOperations;
+    private final long deadline;
+    private final BudgetMeter previous;
+    private long operations;
+
+    private BudgetMeter(EvaluationBudget budget, BudgetMeter previous) {
+        this.budget = budget;
+        this.previous = previous;
+        maxTokens = budget.getMaxTokens() > 0 ? budget.getMaxTokens() : Integer.MAX_VALUE;
+        maxDepth = budget.getMaxDepth() > 0 ? budget.getMaxDepth() : Integer.MAX_VALUE;
+        maxOperations = budget.getMaxOperations() > 0 ? budget.getMaxOperations() : Long.MAX_VALUE;
+        deadline = budget.getTimeoutMillis() > 0 ? System.nanoTime() + budget.getTimeoutMillis() * 1000000 : 0;
+    }
+
+    /**
+     * Starts metering an evaluation on the current thread.
+     * @param budget the limits of the evaluation
+     * @return the meter, to be stopped when the evaluation ends
+     */
+    static BudgetMeter start(EvaluationBudget budget) {
+        BudgetMeter meter = new BudgetMeter(budget, ACTIVE.get());
+        ACTIVE.set(meter);
+        return meter;
+    }
+
+    /**
+     * Stops metering, making the meter that was active before this one active again.
+     */
+    void stop() {
+        if (previous != null) {
+            ACTIVE.set(previous);
+        } else {
+            ACTIVE.remove();
+        }
+    }
+
+    /**
+     * Counts operations and checks the operation limit and the deadline.
+     * @param count the number of operations done since the last charge
+     * @throws BudgetExceededException if a limit is exceeded
+     */
+    void charge(long count) {
+        operations += count;
+        if (operations > maxOperations) {
+            throw new BudgetExceededException(EvaluationBudget.Limit.OPERATIONS, maxOperations);
+        }
+        if (deadline != 0 && System.nanoTime() - deadline > 0) {
+            throw new BudgetExceededException(EvaluationBudget.Limit.TIME, budget.getTimeoutMillis());
+        }
+    }
+
+    /**
+     * Checks the size of a compiled expression, which may come from the cache.
+     * @param expression the compiled expression
+     * @throws BudgetExceededException if the expression has too many tokens or is nested too deeply
+     */
+    void check(CompiledExpression expression) {
+        if (expression.getTokenCount() > maxTokens) {
+            throw new BudgetExceededException(EvaluationBudget.Limit.TOKENS, maxTokens);
+        }
+        if (expression.getNestingDepth() > maxDepth) {
+            throw new BudgetExceededException(EvaluationBudget.Limit.DEPTH, maxDepth);
+        }
+    }
+
+    /**
+     * Charges the meter active on the current thread, if any.
+     * @param count the number of operations done since the last charge
+     * @throws BudgetExceededException if a limit is exceeded
+     */
+    static void chargeActive(long count) {
+        BudgetMeter meter = ACTIVE.get();
+        if (meter != null) {
+            meter.charge(count);
+        }
+    }
+}
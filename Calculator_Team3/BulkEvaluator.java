@@ -0,0 +1,252 @@
+package Calculator_Team3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates files of expressions, one per line, and writes one result per line.
+ * The input file is memory-mapped in line-aligned chunks that are evaluated in parallel;
+ * the expressions are read straight from the mapped bytes, without a reader or a charset
+ * decoder, and the results are written in input order to a channel. Only a few chunks per
+ * thread are in memory at a time, so files of any size can be processed.
+ * Every line starts with ans set to 0, as in {@link BatchEvaluator}.
+ */
+public class BulkEvaluator {
+    static final String MATH_ERROR = "Math error!";
+
+    // Bytes per chunk; large enough that splitting costs little, small enough to balance the threads
+    private static final int CHUNK_BYTES = 8 << 20;
+    private static final int LINE_SEARCH_BYTES = 4096;
+
+    private final CalculatorEngine engine;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a bulk evaluator running on the common fork/join pool.
+     * @param engine the engine evaluating the expressions
+     */
+    public BulkEvaluator(CalculatorEngine engine) {
+        this(engine, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a bulk evaluator running on the given pool.
+     * @param engine the engine evaluating the expressions
+     * @param pool the pool evaluating the chunks
+     */
+    public BulkEvaluator(CalculatorEngine engine, ForkJoinPool pool) {
+        this.engine = engine;
+        this.pool = pool;
+    }
+
+    /**
+     * Evaluates a file of expressions into another file, replacing its contents.
+     * @param input the expressions, one per line, in UTF-8
+     * @param output the file receiving the results
+     * @param radix the radix of the numbers (2, 8, 10 or 16)
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @param sizeRound the number of digits of the results
+     * @return the number of evaluated lines
+     * @throws IOException if a file cannot be read or written
+     */
+    public long evaluate(Path input, Path output, int radix, boolean isDegOrRad, int sizeRound)
+            throws IOException {
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return evaluate(input, out, radix, isDegOrRad, sizeRound);
+        }
+    }
+
+    /**
+     * Evaluates a file of expressions. Every line gives one line of output: the result,
+     * "Math error!" if the evaluation fails, or an empty line for a blank line.
+     * @param input the expressions, one per line, in UTF-8
+     * @param output the channel receiving the results, in input order
+     * @param radix the radix of the numbers (2, 8, 10 or 16)
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @param sizeRound the number of digits of the results
+     * @return the number of evaluated lines
+     * @throws IOException if the input cannot be read or the output written
+     */
+    public long evaluate(Path input, WritableByteChannel output, int radix, boolean isDegOrRad, int sizeRound)
+            throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = in.size();
+            long lines = 0;
+            // Chunks being evaluated, oldest first; bounded so a slow output limits the mapping
+            ArrayDeque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+            int maxPending = pool.getParallelism() * 2;
+            try {
+                for (long start = 0; start < size;) {
+                    long end = lineEnd(in, Math.min(start + CHUNK_BYTES, size), size);
+                    if (end - start > Integer.MAX_VALUE) {
+                        throw new IOException("line too long at byte " + start);
+                    }
+                    MappedByteBuffer bytes = in.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                    pending.add(pool.submit(() -> evaluateChunk(bytes, radix, isDegOrRad, sizeRound)));
+                    if (pending.size() >= maxPending) {
+                        lines += write(pending.remove(), output);
+                    }
+                    start = end;
+                }
+                while (!pending.isEmpty()) {
+                    lines += write(pending.remove(), output);
+                }
+            } finally {
+                for (Future<Chunk> future : pending) {
+                    future.cancel(false);
+                }
+            }
+            return lines;
+        }
+    }
+
+    // Returns the position after the first line break at or after position, or size if there is none
+    private static long lineEnd(FileChannel in, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(LINE_SEARCH_BYTES);
+        while (position < size) {
+            buffer.clear();
+            int count = in.read(buffer, position);
+            if (count <= 0) {
+                break;
+            }
+            for (int i = 0; i < count; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += count;
+        }
+        return size;
+    }
+
+    private static long write(Future<Chunk> future, WritableByteChannel output) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("evaluation failed", e.getCause());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(chunk.bytes, 0, chunk.length);
+        while (buffer.hasRemaining()) {
+            output.write(buffer);
+        }
+        return chunk.lines;
+    }
+
+    // The results of one chunk of input
+    private static final class Chunk {
+        byte bytes[];
+        int length;
+        long lines;
+
+        Chunk(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void append(String text) {
+            int count = text.length();
+            ensureCapacity(count + 1);
+            for (int i = 0; i < count; i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    // Rare: results are ASCII except for unusual formats
+                    length -= i;
+                    byte encoded[] = text.getBytes(StandardCharsets.UTF_8);
+                    ensureCapacity(encoded.length + 1);
+                    System.arraycopy(encoded, 0, bytes, length, encoded.length);
+                    length += encoded.length;
+                    break;
+                }
+                bytes[length++] = (byte) c;
+            }
+            bytes[length++] = '\n';
+            lines++;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+
+    // Evaluates every line of a mapped chunk
+    private Chunk evaluateChunk(ByteBuffer bytes, int radix, boolean isDegOrRad, int sizeRound) {
+        CalculatorLogic logic = new CalculatorLogic(engine);
+        logic.setRadix(radix);
+        logic.setDegOrRad(isDegOrRad);
+        logic.setSizeRound(sizeRound);
+        int size = bytes.limit();
+        Chunk chunk = new Chunk(Math.max(64, size / 2));
+        byte line[] = new byte[256];
+        int lineStart = 0;
+        boolean isAscii = true;
+        for (int i = 0; i <= size; i++) {
+            byte b = i < size ? bytes.get(i) : (byte) '\n';
+            if (b != '\n') {
+                isAscii &= b >= 0;
+                continue;
+            }
+            if (i == size && lineStart == size) {
+                break; // The chunk ends with a line break
+            }
+            int length = i - lineStart;
+            if (length > 0 && bytes.get(i - 1) == '\r') {
+                length--;
+            }
+            if (length > line.length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            bytes.get(lineStart, line, 0, length);
+            // ASCII lines become strings by a plain copy; only lines with symbols like √ need decoding
+            String expression = new String(line, 0, length,
+                    isAscii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+            chunk.append(evaluateLine(logic, expression, 0));
+            lineStart = i + 1;
+            isAscii = true;
+        }
+        return chunk;
+    }
+
+    /**
+     * Evaluates one line of input as the headless modes print it.
+     * @param logic the calculation logic with the radix, angle mode and rounding to use
+     * @param line the expression
+     * @param ans the value of ans at the start of the expression
+     * @return the formatted result, "Math error!" if the evaluation fails, the exceeded limit if
+     *         it is over budget, or an empty string for a blank line
+     */
+    static String evaluateLine(CalculatorLogic logic, String line, double ans) {
+        if (line.trim().isEmpty()) {
+            return "";
+        }
+        logic.setError(false);
+        logic.setAns(ans);
+        try {
+            double result = logic.valueMath(line);
+            if (!logic.isError()) {
+                return logic.numberToString(result, logic.getRadix(), logic.getSizeRound());
+            }
+        } catch (BudgetExceededException e) {
+            return e.getMessage();
+        } catch (RuntimeException e) {
+            // Unexpected failures of one line are reported like math errors
+        }
+        return MATH_ERROR;
+    }
+}
@@ -0,0 +1,437 @@
+package Calculator_Team3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiles an expression into JVM bytecode and loads it as a hidden class extending
+ * {@link CompiledFormula}, so the JIT compiler can optimize it like hand-written code.
+ * The generated methods are straight-line code: operators map to arithmetic
+ * instructions or to static calls into {@link MathFunctions}, which report math
+ * errors as NaN. Expressions the compiler cannot handle make it return null, and
+ * the caller falls back to the interpreter.
+ */
+final class BytecodeCompiler {
+    private static final String CLASS_NAME = "Calculator_Team3/GeneratedFormula";
+    private static final String SUPER_NAME = "Calculator_Team3/CompiledFormula";
+    private static final String RUNTIME = "Calculator_Team3/MathFunctions";
+    private static final String MATH = "java/lang/Math";
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    // Opcodes used by the generator
+    private static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13;
+    private static final int LDC2_W = 0x14, DCONST_0 = 0x0e, DCONST_1 = 0x0f;
+    private static final int DLOAD_1 = 0x27, DLOAD_3 = 0x29, ALOAD_0 = 0x2a, ALOAD_1 = 0x2b;
+    private static final int DALOAD = 0x31, DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f;
+    private static final int DNEG = 0x77, DRETURN = 0xaf, RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+
+    private final ConstantPool pool = new ConstantPool();
+    private final CompiledExpression expression;
+    private final boolean isDegOrRad;
+
+    private BytecodeCompiler(CompiledExpression expression, boolean isDegOrRad) {
+        this.expression = expression;
+        this.isDegOrRad = isDegOrRad;
+    }
+
+    /**
+     * Compiles an expression into a hidden class.
+     * @param expression the compiled expression
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @return the formula, or null if the expression cannot be compiled to bytecode
+     */
+    static CompiledFormula compile(CompiledExpression expression, boolean isDegOrRad) {
+        if (!isCompilable(expression)) {
+            return null;
+        }
+        try {
+            byte bytes[] = new BytecodeCompiler(expression, isDegOrRad).generate();
+            if (bytes == null) {
+                return null;
+            }
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            CompiledFormula formula = (CompiledFormula) lookup
+                    .findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+            formula.setParameters(expression.getParameterNames());
+            return formula;
+        } catch (Throwable e) {
+            if (Trace.ERRORS) {
+                Trace.error("bytecode", "compilation failed: " + e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Checks if every token of an expression can be turned into bytecode.
+     * Stores, calls of user functions, unknown words and malformed numbers are left to
+     * the interpreter.
+     * @param expression the compiled expression
+     * @return true if the expression can be compiled
+     */
+    static boolean isCompilable(CompiledExpression expression) {
+        if (!expression.isValid()) {
+            return false;
+        }
+        for (Token t : expression.getPostfix()) {
+            if (t.kind == Token.OPERATOR ? t.is(Operator.STORE) || t.is(Operator.CALL)
+                    : t.kind != Token.VARIABLE && !t.valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Builds the class file, or returns null if a method would be too large
+    private byte[] generate() throws IOException {
+        int thisClass = pool.classRef(CLASS_NAME);
+        int superClass = pool.classRef(SUPER_NAME);
+        byte constructor[] = method(0x0000, "<init>", "()V", constructorCode(), 1, 1);
+        Code evaluate = body(true);
+        Code apply = body(false);
+        if (evaluate == null || apply == null) {
+            return null;
+        }
+        byte evaluateMethod[] = method(0x0001, "evaluate", "([D)D", evaluate.bytes(), evaluate.maxStack, 2);
+        byte applyMethod[] = method(0x0001, "applyAsDouble", "(DD)D", apply.bytes(), apply.maxStack, 5);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0); // Minor version
+        out.writeShort(52); // Java 8 class file: no stack map frames needed for straight-line code
+        pool.writeTo(out);
+        out.writeShort(0x0010 | 0x0020); // ACC_FINAL | ACC_SUPER
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0); // Interfaces
+        out.writeShort(0); // Fields
+        out.writeShort(3); // Methods
+        out.write(constructor);
+        out.write(evaluateMethod);
+        out.write(applyMethod);
+        out.writeShort(0); // Attributes
+        return buffer.toByteArray();
+    }
+
+    private byte[] constructorCode() {
+        Code code = new Code();
+        code.op(ALOAD_0, 1);
+        code.op(INVOKESPECIAL, -1);
+        code.u2(pool.methodRef(SUPER_NAME, "<init>", "()V"));
+        code.op(RETURN, 0);
+        return code.bytes();
+    }
+
+    /**
+     * Generates the body of one of the evaluation methods.
+     * @param fromArray true to read variables from the array argument by slot,
+     *        false to bind the first two parameters to the double arguments
+     * @return the code, or null if it exceeds the method size limit
+     */
+    private Code body(boolean fromArray) {
+        Code code = new Code();
+        for (Token t : expression.getPostfix()) {
+            if (t.kind == Token.VARIABLE) {
+                if (fromArray) {
+                    code.op(ALOAD_1, 1);
+                    pushInt(code, t.slot);
+                    code.op(DALOAD, 0); // Array and index (2 words) become a double (2 words)
+                } else {
+                    if (t.slot == 0) { // The slot is the parameter index
+                        code.op(DLOAD_1, 2);
+                    } else if (t.slot == 1) {
+                        code.op(DLOAD_3, 2);
+                    } else {
+                        pushDouble(code, Double.NaN);
+                    }
+                }
+            } else if (t.kind != Token.OPERATOR) {
+                pushDouble(code, t.value);
+            } else {
+                operator(code, t.op);
+            }
+            if (code.length() > MAX_CODE_LENGTH - 1) {
+                return null;
+            }
+        }
+        code.op(DRETURN, -2);
+        return code;
+    }
+
+    private void pushInt(Code code, int value) {
+        if (value <= 5) {
+            code.op(ICONST_0 + value, 1);
+        } else if (value <= Byte.MAX_VALUE) {
+            code.op(BIPUSH, 1);
+            code.u1(value);
+        } else if (value <= Short.MAX_VALUE) {
+            code.op(SIPUSH, 1);
+            code.u2(value);
+        } else {
+            code.op(LDC_W, 1); // SIPUSH sign-extends, so larger slots come from the constant pool
+            code.u2(pool.intConstant(value));
+        }
+    }
+
+    private void pushDouble(Code code, double value) {
+        if (Double.doubleToRawLongBits(value) == 0L) {
+            code.op(DCONST_0, 2);
+        } else if (value == 1.0) {
+            code.op(DCONST_1, 2);
+        } else {
+            code.op(LDC2_W, 2);
+            code.u2(pool.doubleConstant(value));
+        }
+    }
+
+    private void operator(Code code, Operator op) {
+        switch (op) {
+        case NEGATE:
+            code.op(DNEG, 0);
+            break;
+        case ADD:
+            code.op(DADD, -2);
+            break;
+        case SUBTRACT:
+            code.op(DSUB, -2);
+            break;
+        case MULTIPLY:
+            code.op(DMUL, -2);
+            break;
+        case PERCENT:
+            pushDouble(code, 100);
+            code.op(DDIV, -2);
+            break;
+        case SIN:
+            invoke(code, isDegOrRad ? RUNTIME : MATH, isDegOrRad ? "sinDeg" : "sin", 1);
+            break;
+        case COS:
+            invoke(code, isDegOrRad ? RUNTIME : MATH, isDegOrRad ? "cosDeg" : "cos", 1);
+            break;
+        case TAN:
+            invoke(code, isDegOrRad ? RUNTIME : MATH, isDegOrRad ? "tanDeg" : "tan", 1);
+            break;
+        case LOG:
+            invoke(code, MATH, "log10", 1);
+            break;
+        case LN:
+            invoke(code, MATH, "log", 1);
+            break;
+        case SQRT:
+            invoke(code, MATH, "sqrt", 1);
+            break;
+        case POWER:
+            invoke(code, RUNTIME, "power", 2);
+            break;
+        case RECIPROCAL:
+            invoke(code, RUNTIME, "reciprocal", 1);
+            break;
+        case DEGREE:
+            invoke(code, RUNTIME, "toRadians", 1);
+            break;
+        case SQUARE:
+            invoke(code, RUNTIME, "square", 1);
+            break;
+        case NOT:
+            invoke(code, RUNTIME, "not", 1);
+            break;
+        case FACTORIAL:
+            invoke(code, RUNTIME, "factorial", 1);
+            break;
+        case DIVIDE:
+            invoke(code, RUNTIME, "divide", 2);
+            break;
+        case AND:
+            invoke(code, RUNTIME, "and", 2);
+            break;
+        case OR:
+            invoke(code, RUNTIME, "or", 2);
+            break;
+        case XOR:
+            invoke(code, RUNTIME, "xor", 2);
+            break;
+        case MOD:
+            invoke(code, RUNTIME, "mod", 2);
+            break;
+        case SHIFT_LEFT:
+            invoke(code, RUNTIME, "shiftLeft", 2);
+            break;
+        case SHIFT_RIGHT:
+            invoke(code, RUNTIME, "shiftRight", 2);
+            break;
+        default:
+            throw new IllegalStateException("Operator " + op + " cannot be compiled");
+        }
+    }
+
+    // Calls a static double function taking one or two doubles
+    private void invoke(Code code, String owner, String name, int arity) {
+        code.op(INVOKESTATIC, arity == 1 ? 0 : -2);
+        code.u2(pool.methodRef(owner, name, arity == 1 ? "(D)D" : "(DD)D"));
+    }
+
+    private byte[] method(int access, String name, String descriptor, byte[] code, int maxStack,
+            int maxLocals) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeShort(access);
+        out.writeShort(pool.utf8(name));
+        out.writeShort(pool.utf8(descriptor));
+        out.writeShort(1); // Attributes: Code
+        out.writeShort(pool.utf8("Code"));
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // Exception table
+        out.writeShort(0); // Attributes
+        return buffer.toByteArray();
+    }
+
+    // Method body under construction, tracking the operand stack size in words
+    private static final class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int stack = 0;
+        private int maxStack = 0;
+
+        void op(int opcode, int stackChange) {
+            bytes.write(opcode);
+            stack += stackChange;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        void u1(int value) {
+            bytes.write(value);
+        }
+
+        void u2(int value) {
+            bytes.write(value >> 8);
+            bytes.write(value);
+        }
+
+        int length() {
+            return bytes.size();
+        }
+
+        byte[] bytes() {
+            return bytes.toByteArray();
+        }
+    }
+
+    // Constant pool with de-duplicated entries
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+        private int count = 1;
+
+        int utf8(String value) {
+            Integer index = indexes.get("U" + value);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(1);
+                out.writeUTF(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return add("U" + value, 1);
+        }
+
+        int classRef(String name) {
+            Integer index = indexes.get("C" + name);
+            if (index != null) {
+                return index;
+            }
+            int nameIndex = utf8(name);
+            write(7, nameIndex);
+            return add("C" + name, 1);
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            String key = "M" + owner + "." + name + descriptor;
+            Integer index = indexes.get(key);
+            if (index != null) {
+                return index;
+            }
+            int ownerIndex = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = nameAndType(name + descriptor, nameIndex, descriptorIndex);
+            write(10, ownerIndex, nameAndType);
+            return add(key, 1);
+        }
+
+        int intConstant(int value) {
+            String key = "I" + value;
+            Integer index = indexes.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(3);
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return add(key, 1);
+        }
+
+        int doubleConstant(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            String key = "D" + bits;
+            Integer index = indexes.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(6);
+                out.writeLong(bits);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return add(key, 2); // Doubles take two constant pool entries
+        }
+
+        private int nameAndType(String key, int nameIndex, int descriptorIndex) {
+            Integer index = indexes.get("N" + key);
+            if (index != null) {
+                return index;
+            }
+            write(12, nameIndex, descriptorIndex);
+            return add("N" + key, 1);
+        }
+
+        private void write(int tag, int... values) {
+            try {
+                out.writeByte(tag);
+                for (int value : values) {
+                    out.writeShort(value);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private int add(String key, int size) {
+            int index = count;
+            indexes.put(key, index);
+            count += size;
+            return index;
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            target.writeShort(count);
+            target.write(bytes.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package Calculator_Team3;
+
+/**
+ * A calculation in the history: the expression, its result and when it was calculated.
+ * Saved and loaded by {@link HistoryStore}.
+ */
+class CalculationHistory {
+    private String expression;
+    private String result;
+    private String timestamp;
+
+    public CalculationHistory(String expression, String result, String timestamp) {
+        this.expression = expression;
+        this.result = result;
+        this.timestamp = timestamp;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+}
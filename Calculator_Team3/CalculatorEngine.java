@@ -0,0 +1,1105 @@
+package Calculator_Team3;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles and evaluates mathematical expressions.
+ * An engine holds no per-calculation state: the radix, the angle mode, the variables
+ * and the error of a calculation live in the {@link EvaluationContext} passed to
+ * {@link #evaluate(String, EvaluationContext)}. One engine, and its cache of compiled
+ * expressions, can therefore be shared by any number of threads without locking,
+ * as long as each thread uses its own context.
+ * An input of the form {@code f(x, y) = sqrt(x² + y²)} defines a user function in the
+ * context instead, which later expressions evaluated with that context can call.
+ */
+public class CalculatorEngine {
+    /**
+     * The most digits decimal arithmetic may use. The elementary functions take time that
+     * grows faster than the square of the precision, about a second at this one.
+     */
+    public static final int MAX_PRECISION = 1000;
+    private static final Map<String, Double> CONSTANTS = new HashMap<String, Double>();
+    private static final Token NO_TOKENS[] = new Token[0];
+
+    static {
+        CONSTANTS.put("pi", Math.PI);
+        CONSTANTS.put("π", Math.PI);
+        CONSTANTS.put("e", Math.E);
+    }
+
+    private final FormatValue formatValue = new FormatValue();
+    private final ExpressionCache expressionCache;
+
+    /**
+     * Creates an engine with a cache of {@link ExpressionCache#DEFAULT_CAPACITY} expressions.
+     */
+    public CalculatorEngine() {
+        this(new ExpressionCache());
+    }
+
+    /**
+     * Creates an engine using the given expression cache.
+     * @param expressionCache the cache of compiled expressions
+     */
+    public CalculatorEngine(ExpressionCache expressionCache) {
+        this.expressionCache = expressionCache;
+    }
+
+    /**
+     * Gets the cache of compiled expressions.
+     * @return the expression cache, whose hit/miss/eviction counts can be queried
+     */
+    public ExpressionCache getExpressionCache() {
+        return expressionCache;
+    }
+
+    /**
+     * Evaluates a mathematical expression with the settings and variables of a context.
+     * The error state of the context is reset first, so after the call
+     * {@link EvaluationContext#isError()} tells whether this evaluation failed.
+     * A function definition is not evaluated but added to the context.
+     * @param math the mathematical expression to evaluate, or a function definition
+     * @param context the settings, variables, budget and error state of the calculation
+     * @return the result of the evaluation, ans for a definition, or an unspecified value, such as
+     *         0 or NaN, if an error occurred
+     * @throws BudgetExceededException if the evaluation exceeds the budget of the context,
+     *         which also records it as the error
+     */
+    public double evaluate(String math, EvaluationContext context) {
+        context.clearError();
+        if (context.getBudget().isUnlimited()) {
+            return evaluateInput(math, context);
+        }
+        BudgetMeter meter = BudgetMeter.start(context.getBudget());
+        context.meter = meter;
+        try {
+            return evaluateInput(math, context);
+        } catch (BudgetExceededException e) {
+            error(context, e.getMessage());
+            throw e;
+        } finally {
+            context.meter = null;
+            meter.stop();
+        }
+    }
+
+    // Evaluates an expression or a definition, once the budget of the context is metered
+    private double evaluateInput(String math, EvaluationContext context) {
+        if (math.indexOf('=') >= 0) {
+            return define(math, context);
+        }
+        double ans = evaluate(compile(math, context.getRadix(), context.isDegOrRad(), context), context);
+        if (Trace.STEPS) {
+            Trace.step("valueMath", "ans = " + ans + (context.isError() ? " (error)" : "") + "\t radix = "
+                    + context.getRadix());
+        }
+        return ans;
+    }
+
+    /**
+     * Evaluates a mathematical expression in decimal arithmetic, so that results such as
+     * {@code 0.1 + 0.2} or {@code 1.1 * 1.1} are exact. The expression first runs in double
+     * arithmetic, which is checked to be exact at every step; only if a step rounds does it
+     * run again with {@link BigDecimal} numbers, so expressions with exact double results cost
+     * little more than {@link #evaluate(String, EvaluationContext)}. Definitions, calls of
+     * user functions and radixes other than 10 are evaluated in double arithmetic and the
+     * result is converted. Variables, including ans, keep double values.
+     * @param math the mathematical expression to evaluate, or a function definition
+     * @param mc the precision and rounding of the operations, with a positive precision
+     * @param context the settings, variables, budget and error state of the calculation
+     * @return the result rounded to the math context, or null if an error occurred
+     * @throws IllegalArgumentException if the precision of the math context is 0 (unlimited)
+     *         or more than {@link #MAX_PRECISION}
+     * @throws BudgetExceededException if the evaluation exceeds the budget of the context,
+     *         which also records it as the error
+     */
+    public BigDecimal evaluateDecimal(String math, MathContext mc, EvaluationContext context) {
+        checkPrecision(mc);
+        context.clearError();
+        if (context.getBudget().isUnlimited()) {
+            return evaluateDecimalInput(math, mc, context);
+        }
+        BudgetMeter meter = BudgetMeter.start(context.getBudget());
+        context.meter = meter;
+        try {
+            return evaluateDecimalInput(math, mc, context);
+        } catch (BudgetExceededException e) {
+            error(context, e.getMessage());
+            throw e;
+        } finally {
+            context.meter = null;
+            meter.stop();
+        }
+    }
+
+    /**
+     * Checks that decimal arithmetic can use the precision of a math context.
+     * @param mc the math context
+     * @throws IllegalArgumentException if the precision is 0 (unlimited) or more than {@link #MAX_PRECISION}
+     */
+    static void checkPrecision(MathContext mc) {
+        if (mc.getPrecision() == 0 || mc.getPrecision() > MAX_PRECISION) {
+            throw new IllegalArgumentException("decimal arithmetic needs a precision from 1 to " + MAX_PRECISION);
+        }
+    }
+
+    // Evaluates an expression in decimal arithmetic where it can, once the budget of the context is metered
+    private BigDecimal evaluateDecimalInput(String math, MathContext mc, EvaluationContext context) {
+        double result;
+        if (math.indexOf('=') < 0 && context.getRadix() == 10) {
+            CompiledExpression expression = compile(math, 10, context.isDegOrRad(), context);
+            if (expression.isValid()) {
+                BigDecimal decimal = DecimalEvaluator.evaluate(expression, mc, context.isDegOrRad(), context);
+                if (decimal != null || context.isError()) {
+                    return decimal;
+                }
+            }
+            result = evaluate(expression, context); // User functions are double functions
+        } else {
+            result = evaluateInput(math, context);
+        }
+        if (context.isError()) {
+            return null;
+        }
+        if (!Double.isFinite(result)) {
+            error(context, "result " + result + " is not a decimal number");
+            return null;
+        }
+        return BigDecimal.valueOf(result).round(mc);
+    }
+
+    /**
+     * Defines a user function in a context, from a definition such as {@code f(x) = x² + 1}.
+     * The body is compiled once, with the radix and the angle mode of the context. Variables
+     * other than the parameters are read now and functions are bound to their current
+     * definitions, so the function is pure and redefining a function it calls has no effect
+     * on it; a function can refer to an earlier definition of itself this way.
+     * @param math the definition
+     * @param context the context to define the function in
+     * @return the value of ans, which a definition leaves unchanged, or 0 if the definition is invalid
+     */
+    private double define(String math, EvaluationContext context) {
+        String source = standardize(math.toLowerCase());
+        int equals = source.indexOf('=');
+        // The head must be: name ( parameter , parameter ... )
+        Token head[] = Lexer.tokenize(source.substring(0, equals), 10, (text, offset) -> Token.name(text, offset));
+        int count = (head.length - 2) / 2;
+        boolean valid = head.length >= 4 && head.length % 2 == 0 && head[1].is(Operator.OPEN_PARENTHESIS)
+                && head[head.length - 1].is(Operator.CLOSE_PARENTHESIS);
+        String name = head.length > 0 ? head[0].text : "";
+        String parameters[] = new String[Math.max(count, 0)];
+        for (int i = 0; valid && i < count; i++) {
+            parameters[i] = head[2 + 2 * i].text;
+            valid = isFunctionName(parameters[i]) && context.findFunction(parameters[i]) == null
+                    && !parameters[i].equals(name) && indexOf(parameters, i, parameters[i]) < 0
+                    && (i == count - 1 || head[3 + 2 * i].is(Operator.COMMA));
+        }
+        if (!valid || !isFunctionName(name)) {
+            return error(context, "malformed function definition");
+        }
+
+        int radix = context.getRadix();
+        int maxTokens = context.meter != null ? context.meter.maxTokens : Integer.MAX_VALUE;
+        Token tokens[] = Lexer.tokenize(source.substring(equals + 1), radix, (text, offset) -> {
+            int index = indexOf(parameters, parameters.length, text);
+            if (index >= 0) {
+                return Token.variable(text, index, offset); // Parameters are read from the argument array
+            }
+            Token t = parseOperand(text, offset, radix);
+            if (t.kind != Token.NAME || !context.isDefined(text)) {
+                return t;
+            }
+            // Other variables are read once, so that the function depends only on its arguments
+            return Token.number(Token.CONSTANT, text, context.getVariable(text), true, offset);
+        }, maxTokens);
+        Token calls[] = markCalls(tokens, context);
+        for (Token t : tokens) {
+            if (t.kind == Token.NAME) {
+                return error(context, "undefined variable " + t.text);
+            }
+        }
+        CompiledExpression body = ExpressionOptimizer.optimize(
+                postFix(source, standardizeMath(tokens), calls, tokens.length), context.isDegOrRad());
+        if (context.meter != null) {
+            context.meter.check(body);
+        }
+        if (!body.isValid()) {
+            return error(context, "malformed function body");
+        }
+        Token postfix[] = body.getPostfix();
+        UserFunction callees[] = new UserFunction[postfix.length];
+        for (int i = 0; i < postfix.length; i++) {
+            Token t = postfix[i];
+            if (t.is(Operator.STORE)) {
+                return error(context, "a function cannot store");
+            }
+            if (t.is(Operator.CALL)) {
+                callees[i] = context.findFunction(t.text);
+                if (callees[i] == null) {
+                    return error(context, "undefined function " + t.text);
+                }
+                if (callees[i].getArity() != t.arity) {
+                    return error(context, t.text + " takes " + callees[i].getArity() + " arguments");
+                }
+            }
+        }
+        CompiledFormula formula = BytecodeCompiler.compile(body, context.isDegOrRad());
+        if (!context.defineFunction(new UserFunction(name, parameters, body, formula, callees))) {
+            return error(context, "too many functions");
+        }
+        if (Trace.STEPS) {
+            Trace.step("define", name + Arrays.toString(parameters) + " = " + Arrays.toString(postfix));
+        }
+        return context.getAns();
+    }
+
+    // Function and parameter names follow the rules of variable names, and cannot be ans
+    private static boolean isFunctionName(String name) {
+        return isVariableName(name) && !name.equals("ans");
+    }
+
+    private static int indexOf(String[] names, int count, String name) {
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compiles an expression into a function of its variables for repeated evaluation.
+     * The expression is turned into JVM bytecode when possible; expressions that store
+     * a value or contain unknown words are interpreted instead.
+     * @param math the mathematical expression to compile
+     * @param radix the radix of the numbers in the expression
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @return the compiled formula, whose parameters are the variables in order of first use
+     */
+    public CompiledFormula compileFormula(String math, int radix, boolean isDegOrRad) {
+        return toFormula(compile(math, radix, isDegOrRad), isDegOrRad);
+    }
+
+    /**
+     * Turns a compiled expression into a formula, in bytecode when possible.
+     * @param expression the compiled expression
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @return the formula
+     */
+    static CompiledFormula toFormula(CompiledExpression expression, boolean isDegOrRad) {
+        CompiledFormula formula = BytecodeCompiler.compile(expression, isDegOrRad);
+        if (formula == null) {
+            formula = new InterpretedFormula(expression, isDegOrRad);
+        }
+        return formula;
+    }
+
+    /**
+     * Compiles an expression for evaluation over columns of variable values.
+     * @param math the mathematical expression to compile
+     * @param radix the radix of the numbers in the expression
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @return the kernel, whose columns are the variables in order of first use
+     */
+    public ColumnKernel compileKernel(String math, int radix, boolean isDegOrRad) {
+        return new ColumnKernel(compile(math, radix, isDegOrRad), isDegOrRad);
+    }
+
+    /**
+     * Converts a number to its string representation in a radix, rounded to a number of digits.
+     * @param num the number to convert
+     * @param radix the base to use (2, 8, 10, 16)
+     * @param size the precision (number of digits)
+     * @return the string representation of the number
+     */
+    public String numberToString(double num, int radix, int size) {
+        if (radix != 10) {
+            return formatValue.doubleToStringRadix(num, radix, size);
+        }
+        return myRound(num, size);
+
+    }
+
+    /**
+     * Checks if a number is an integer (has no decimal part).
+     * @param num the number to check
+     * @return true if the number is an integer, false otherwise
+     */
+    private static boolean isIntegerNumber(double num) {
+        long a = (long) num;
+        if (a == num) {
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Converts a decimal number to a string, in plain notation unless it is very large or small.
+     * @param num the number to convert
+     * @return the string representation of the number, without trailing zeros
+     */
+    public String decimalToString(BigDecimal num) {
+        BigDecimal stripped = num.stripTrailingZeros();
+        int exponent = stripped.precision() - stripped.scale() - 1; // Of the leading digit
+        return exponent >= -7 && exponent < 21 ? stripped.toPlainString() : stripped.toString();
+    }
+
+    /**
+     * Rounds a double number to a specified number of decimal places and returns it as a string.
+     * @param num the number to round
+     * @param size the maximum total number of digits to display
+     * @return the formatted string representation of the number
+     */
+    private static String myRound(double num, int size) {
+        if (isIntegerNumber(num)) {
+            return Long.toString((long) num);
+        } else if (!Double.isFinite(num) || Math.abs(num) >= 0x1p63) {
+            return Double.toString(num); // Too large for a long, so without fraction digits to round
+        } else {
+            int n = size - Long.toString((long) num).length();
+            double scaled = num * Math.pow(10, n);
+            // Math.round is exact below 2^53 but saturates at the long range, so larger values round in decimal
+            num = Math.abs(scaled) < 0x1p53 ? Math.round(scaled) / Math.pow(10, n)
+                    : new BigDecimal(num).setScale(n, RoundingMode.HALF_UP).doubleValue();
+            if (isIntegerNumber(num)) {
+                return Long.toString((long) num);
+            } else {
+                return Double.toString(num);
+            }
+        }
+    }
+
+    /**
+     * Converts an angle from degrees to radians.
+     * @param num the angle in degrees
+     * @return the angle in radians
+     */
+    private static double convertToRad(double num) {
+        num = num * Math.PI / 180;
+        return num;
+    }
+
+    /**
+     * Creates the token for an operand, classifying it and parsing its value once.
+     * Malformed numbers still become number tokens, but are marked invalid so that
+     * evaluating them reports an error. Other words stay names until
+     * {@link #resolveNames(Token[])} numbers the variables among them.
+     * @param s the source text of the operand
+     * @param offset the position of the operand in the input
+     * @param radix the radix of the input
+     * @return the operand token
+     */
+    private Token parseOperand(String s, int offset, int radix) {
+        Double constant = CONSTANTS.get(s);
+        int kind = constant != null ? Token.CONSTANT : Token.LITERAL;
+        if (radix != 10 && formatValue.isRadixString(s, radix)) {
+            try {
+                return Token.number(kind, s, formatValue.stringRadixToDouble(s, radix), true, offset);
+            } catch (NumberFormatException e) {
+                return Token.number(kind, s, -1, false, offset);
+            }
+        }
+        if (constant != null) {
+            return Token.number(kind, s, constant, radix == 10, offset);
+        }
+        try {
+            double value = Double.parseDouble(s);
+            boolean valid = radix == 10 && s.charAt(s.length() - 1) != '.';
+            return Token.number(kind, s, value, valid, offset);
+        } catch (NumberFormatException e) {
+            return Token.name(s, offset);
+        }
+    }
+
+    /**
+     * Turns the words that can name a variable into variable tokens, numbered in order of
+     * first use. The numbers are the slots of the expression, which the context evaluating
+     * it binds to its own variables, so compiled expressions fit every context.
+     * Words followed by "(" must already be marked as calls where they name a function.
+     * @param s the tokens, changed in place
+     */
+    private static void resolveNames(Token[] s) {
+        Map<String, Integer> slots = null;
+        for (int i = 0; i < s.length; i++) {
+            Token t = s[i];
+            if (t.kind != Token.NAME || !SymbolTable.isName(t.text)) {
+                continue;
+            }
+            if (slots == null) {
+                slots = new HashMap<String, Integer>();
+            }
+            Integer slot = slots.get(t.text);
+            if (slot == null) {
+                slot = slots.size();
+                slots.put(t.text, slot);
+            }
+            s[i] = Token.variable(t.text, slot, t.offset);
+        }
+    }
+
+    /**
+     * Checks if a name can be used as a variable: a valid name that the lexer reads as a
+     * single word and that is not a constant.
+     * @param name the name in lower case
+     * @return true if expressions can refer to a variable of that name
+     */
+    static boolean isVariableName(String name) {
+        if (!SymbolTable.isName(name) || CONSTANTS.containsKey(name)) {
+            return false;
+        }
+        Token tokens[] = Lexer.tokenize(name, 10, (text, offset) -> Token.name(text, offset));
+        return tokens.length == 1 && tokens[0].kind == Token.NAME;
+    }
+
+    /**
+     * Turns every word followed by "(" that names a user function of the context into a
+     * call token, which records the number of arguments up to the matching ")".
+     * Other words followed by "(" stay operands, multiplied by the parenthesis.
+     * @param s the tokens from the lexer, changed in place
+     * @param context the context whose functions can be called, or null for none
+     * @return the words followed by "(", as call tokens or operands, which decide whether
+     *         the expression parses the same way in another context
+     */
+    private static Token[] markCalls(Token[] s, EvaluationContext context) {
+        Token words[] = NO_TOKENS;
+        int count = 0;
+        for (int i = 0; i + 1 < s.length; i++) {
+            if ((s[i].isVarOrConst() || s[i].kind == Token.NAME) && s[i + 1].is(Operator.OPEN_PARENTHESIS)) {
+                if (context != null && context.findFunction(s[i].text) != null) {
+                    s[i] = Token.call(s[i].text, countArguments(s, i + 1), s[i].offset);
+                }
+                if (count == words.length) {
+                    words = Arrays.copyOf(words, Math.max(4, count * 2));
+                }
+                words[count++] = s[i];
+            }
+        }
+        return count == words.length ? words : Arrays.copyOf(words, count);
+    }
+
+    // Counts the arguments from the parenthesis at start to the matching one or the end
+    private static int countArguments(Token[] s, int start) {
+        if (start + 1 == s.length || s[start + 1].is(Operator.CLOSE_PARENTHESIS)) {
+            return 0;
+        }
+        int depth = 0, count = 1;
+        for (int i = start; i < s.length; i++) {
+            if (s[i].is(Operator.OPEN_PARENTHESIS)) {
+                depth++;
+            } else if (s[i].is(Operator.CLOSE_PARENTHESIS) && --depth == 0) {
+                break;
+            } else if (s[i].is(Operator.COMMA) && depth == 1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Standardizes a string by removing leading/trailing spaces and reducing multiple spaces to one.
+     * @param s the string to standardize
+     * @return the standardized string
+     */
+    private String standardize(String s) {
+        if (isStandard(s)) {
+            return s; // Skip the regular expression for the usual, already standardized input
+        }
+        s = s.trim();
+        s = s.replaceAll("\\s+", " ");
+        return s;
+    }
+
+    /**
+     * Checks if a string is already standardized, without allocating.
+     * @param s the string to check
+     * @return true if standardize would return the string unchanged
+     */
+    private boolean isStandard(String s) {
+        int n = s.length();
+        if (n > 0 && (s.charAt(0) <= ' ' || s.charAt(n - 1) <= ' ')) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < ' ' || c == ' ' && s.charAt(i + 1) == ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Standardizes a mathematical expression by properly formatting operators and operands.
+     * Handles implicit multiplication, parentheses, etc.
+     * @param s array of tokens to standardize
+     * @return standardized list of tokens
+     */
+    private List<Token> standardizeMath(Token[] s) {
+        List<Token> s1 = new ArrayList<Token>(s.length + 4);
+
+        int open = 0, close = 0;
+        for (int i = 0; i < s.length; i++) {
+            if (s[i].is(Operator.OPEN_PARENTHESIS)) {
+                open++;
+            } else if (s[i].is(Operator.CLOSE_PARENTHESIS)) {
+                close++;
+            }
+        }
+
+        for (int i = 0; i < s.length; i++) {
+            Token prev = i > 0 ? s[i - 1] : null;
+            Token next = i < s.length - 1 ? s[i + 1] : null;
+            // Convert ")(..." to ")*(...", adding implicit multiplication
+            if (prev != null && s[i].isPrefix()
+                    && (prev.is(Operator.CLOSE_PARENTHESIS) || prev.isNumber())) {
+                s1.add(Token.operator(Operator.MULTIPLY, s[i].offset));
+            }
+            // Handle consecutive factorial operators like "3!2!"
+            if (prev != null && prev.isPostfix() && s[i].isNumber()) {
+                s1.add(Token.operator(Operator.MULTIPLY, s[i].offset));
+            }
+            // Handle positive signs (+) at the beginning or after other operators
+            if ((prev == null || (!prev.isNumber()
+                    && !prev.is(Operator.CLOSE_PARENTHESIS) && !prev.isPostfix()))
+                    && s[i].is(Operator.ADD)
+                    && next != null && (next.isNumber() || next.is(Operator.ADD))) {
+                continue;
+            }
+            // Handle negative signs (-) as unary operator
+            if ((prev == null || (!prev.isNumber()
+                    && !prev.is(Operator.CLOSE_PARENTHESIS) && !prev.isPostfix()))
+                    && s[i].is(Operator.SUBTRACT)
+                    && next != null && (next.isNumber() || next.is(Operator.SUBTRACT))) {
+                s1.add(Token.operator(Operator.NEGATE, s[i].offset));
+            }
+            // Handle implicit multiplication like "6π" or "...")π"
+            else if (prev != null
+                    && ((prev.isNumber() || prev.is(Operator.CLOSE_PARENTHESIS)) && s[i].isVarOrConst())) {
+                s1.add(Token.operator(Operator.MULTIPLY, s[i].offset));
+                s1.add(s[i]);
+            } else {
+                s1.add(s[i]);
+            }
+        }
+
+        // Add missing closing parentheses
+        int end = s.length > 0 ? s[s.length - 1].offset + s[s.length - 1].text.length() : 0;
+        for (int i = 0; i < (open - close); i++) {
+            s1.add(Token.operator(Operator.CLOSE_PARENTHESIS, end));
+        }
+        if (Trace.STEPS) {
+            Trace.step("standardize", s1.toString());
+        }
+        return s1;
+    }
+
+    /**
+     * Processes the input string and converts it into tokens for calculation.
+     * Breaks down the input into numbers, operators, functions, etc.
+     * @param sMath the mathematical expression to process
+     * @param radix the radix of the input
+     * @param maxTokens the most tokens allowed
+     * @return the tokens of the expression
+     * @throws BudgetExceededException if the expression has more than maxTokens tokens
+     */
+    private Token[] processInput(String sMath, int radix, int maxTokens) {
+        sMath = sMath.toLowerCase();
+        Token[] tokens = Lexer.tokenize(sMath, radix, (text, offset) -> parseOperand(text, offset, radix),
+                maxTokens);
+        if (Trace.STEPS) {
+            Trace.step("lexer", Arrays.toString(tokens));
+        }
+        return tokens;
+    }
+
+    // The deepest nesting of parentheses, counting the ones added to close the expression
+    private static int nestingDepth(List<Token> elementMath) {
+        int depth = 0, max = 0;
+        for (Token t : elementMath) {
+            if (t.is(Operator.OPEN_PARENTHESIS)) {
+                max = Math.max(max, ++depth);
+            } else if (t.is(Operator.CLOSE_PARENTHESIS)) {
+                depth--;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Converts an infix mathematical expression to postfix notation (Reverse Polish Notation).
+     * Uses the Shunting-yard algorithm.
+     * @param source the normalized input the tokens come from
+     * @param elementMath the tokens of the infix expression
+     * @param calls the words followed by "(", as marked by {@link #markCalls(Token[], EvaluationContext)}
+     * @param tokenCount the number of tokens the lexer found
+     * @return the compiled expression in postfix notation
+     */
+    private CompiledExpression postFix(String source, List<Token> elementMath, Token[] calls, int tokenCount) {
+        return postFix(source, elementMath, calls, tokenCount, null, 0);
+    }
+
+    /**
+     * Converts an infix expression to postfix notation, resuming from the state of the
+     * parser before a token when a session kept it from a previous parse.
+     * @param source the normalized input the tokens come from
+     * @param elementMath the tokens of the infix expression
+     * @param calls the words followed by "(", as marked by {@link #markCalls(Token[], EvaluationContext)}
+     * @param tokenCount the number of tokens the lexer found
+     * @param session keeps the state of the parser before every token, or null
+     * @param from the index of the first token to parse, 0 without a session
+     * @return the compiled expression in postfix notation
+     */
+    private CompiledExpression postFix(String source, List<Token> elementMath, Token[] calls, int tokenCount,
+            EditSession session, int from) {
+        int nestingDepth = nestingDepth(elementMath);
+        List<Token> output = session != null ? session.output(from) : new ArrayList<Token>(elementMath.size());
+        EditSession.Frame S = session != null ? session.stack(from) : null; // Top of the operator stack
+        for (int i = from; i < elementMath.size(); i++) { // Process each token
+            Token t = elementMath.get(i);
+            if (session != null) {
+                session.checkpoint(i, output.size(), S);
+            }
+            if (t.kind != Token.OPERATOR) { // If not an operator (i.e., an operand)
+                output.add(t); // Add to output
+            } else if (t.is(Operator.OPEN_PARENTHESIS)) {
+                S = new EditSession.Frame(t, S); // Push "(" onto the stack
+            } else if (t.is(Operator.CLOSE_PARENTHESIS)) { // If ")"
+                // Pop operators until matching "(" is found
+                while (S != null && !S.token.is(Operator.OPEN_PARENTHESIS)) {
+                    output.add(S.token);
+                    S = S.below;
+                }
+                if (S == null) {
+                    if (Trace.ERRORS) {
+                        Trace.error("postFix", "unbalanced ')' at " + t.offset);
+                    }
+                    return new CompiledExpression(source, new Token[0], false, calls, tokenCount,
+                            nestingDepth);
+                }
+                S = S.below;
+                if (S != null && S.token.is(Operator.CALL)) {
+                    output.add(S.token); // The arguments are complete
+                    S = S.below;
+                }
+            } else if (t.is(Operator.COMMA)) {
+                // Pop operators until the "(" of the call the comma separates arguments of
+                while (S != null && !S.token.is(Operator.OPEN_PARENTHESIS)) {
+                    output.add(S.token);
+                    S = S.below;
+                }
+                if (S == null || S.below == null || !S.below.token.is(Operator.CALL)) {
+                    if (Trace.ERRORS) {
+                        Trace.error("postFix", "',' outside a function call at " + t.offset);
+                    }
+                    return new CompiledExpression(source, new Token[0], false, calls, tokenCount,
+                            nestingDepth);
+                }
+            } else {
+                // While stack not empty and top operator has higher or equal precedence,
+                // pop operators to output
+                while (S != null
+                        && S.token.op.getPrecedence() >= t.op.getPrecedence()
+                        && !t.op.isPrefix()) {
+                    output.add(S.token);
+                    S = S.below;
+                }
+                S = new EditSession.Frame(t, S); // Push current operator onto stack
+            }
+        }
+        if (session != null) {
+            session.checkpoint(elementMath.size(), output.size(), S);
+        }
+        // Pop remaining operators to output
+        while (S != null) {
+            output.add(S.token);
+            S = S.below;
+        }
+        if (Trace.STEPS) {
+            Trace.step("postFix", output.toString());
+        }
+        return new CompiledExpression(source, output.toArray(new Token[output.size()]), true, calls,
+                tokenCount, nestingDepth);
+    }
+
+    /**
+     * Compiles an expression to postfix tokens, reusing a cached result when the same
+     * input was already compiled with the same radix and angle mode.
+     * @param math the mathematical expression to compile
+     * @param radix the radix of the numbers in the expression
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @return the compiled expression
+     */
+    CompiledExpression compile(String math, int radix, boolean isDegOrRad) {
+        return compile(math, radix, isDegOrRad, null);
+    }
+
+    /**
+     * Compiles an expression within the token and nesting limits of a budget. The lexer
+     * stops at the first token over the limit; a cached expression is checked against
+     * the sizes recorded when it was compiled.
+     * @param math the mathematical expression to compile
+     * @param radix the radix of the numbers in the expression
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @param context the functions that can be called and the budget of the evaluation,
+     *        or null for neither
+     * @return the compiled expression
+     * @throws BudgetExceededException if the expression has too many tokens or is nested too deeply
+     */
+    private CompiledExpression compile(String math, int radix, boolean isDegOrRad, EvaluationContext context) {
+        String source = standardize(math.toLowerCase());
+        BudgetMeter meter = context != null ? context.meter : null;
+        CompiledExpression expression = expressionCache.get(source, radix, isDegOrRad);
+        // The functions of the context decide which words followed by "(" are calls
+        if (expression == null || !expression.hasCallsOf(context)) {
+            Token tokens[] = processInput(source, radix, meter != null ? meter.maxTokens : Integer.MAX_VALUE);
+            Token calls[] = markCalls(tokens, context);
+            resolveNames(tokens);
+            expression = ExpressionOptimizer.optimize(
+                    postFix(source, standardizeMath(tokens), calls, tokens.length), isDegOrRad);
+            expressionCache.put(radix, isDegOrRad, expression);
+        }
+        if (meter != null) {
+            meter.check(expression);
+        }
+        return expression;
+    }
+
+    /**
+     * Compiles an expression that is being edited, lexing and parsing only what changed
+     * since the previous text of the session. Edits are usually small and near the end, so
+     * most tokens keep their parsed operands and the parser resumes from its state before
+     * the first changed token. The result is not cached, since most texts in an edit are
+     * never seen again.
+     * @param session the state kept from the previous text
+     * @param math the mathematical expression to compile
+     * @param context the radix, the angle mode and the functions of the calculation
+     * @return the compiled expression
+     */
+    CompiledExpression compile(EditSession session, String math, EvaluationContext context) {
+        String source = standardize(math.toLowerCase());
+        int radix = context.getRadix();
+        session.prepare(radix);
+        Token tokens[] = Lexer.retokenize(source, radix, (text, offset) -> parseOperand(text, offset, radix),
+                session.source, session.tokens);
+        session.source = source;
+        session.tokens = tokens;
+        tokens = tokens.clone(); // Marking calls and names replaces tokens
+        Token calls[] = markCalls(tokens, context);
+        resolveNames(tokens);
+        List<Token> infix = standardizeMath(tokens);
+        return ExpressionOptimizer.optimize(postFix(source, infix, calls, tokens.length, session,
+                session.resume(infix)), context.isDegOrRad());
+    }
+
+    /**
+     * Evaluates an expression that is being edited, to preview its result. The expression
+     * is compiled incrementally in the session; definitions and stores are not evaluated,
+     * since a preview must leave the functions and variables of the context unchanged.
+     * The error state of the context is restored afterwards, so it still describes the
+     * last evaluation.
+     * @param session the state kept from the previous text of the expression
+     * @param math the mathematical expression to preview
+     * @param context the settings and variables of the calculation
+     * @return the result, or NaN if the expression cannot be previewed or an error occurred
+     */
+    double preview(EditSession session, String math, EvaluationContext context) {
+        if (math.indexOf('=') >= 0) {
+            return Double.NaN;
+        }
+        CompiledExpression expression = compile(session, math, context);
+        for (Token t : expression.getPostfix()) {
+            if (t.is(Operator.STORE)) {
+                return Double.NaN;
+            }
+        }
+        String error = context.getError();
+        context.clearError();
+        try {
+            double result = evaluate(expression, context);
+            return context.isError() ? Double.NaN : result;
+        } finally {
+            context.setError(error);
+        }
+    }
+
+    /**
+     * Gets the value of an operand token, reporting an error for malformed numbers
+     * and undefined variables.
+     * @param t the operand token
+     * @param isStoreTarget true if the token is the variable of a store, which may be undefined
+     * @param context the context holding the variables
+     * @return the value of the operand
+     */
+    private double operandValue(Token t, boolean isStoreTarget, EvaluationContext context) {
+        if (t.kind == Token.VARIABLE) {
+            if (!isStoreTarget && !context.isDefined(t.slot)) {
+                error(context, "undefined variable " + t.text);
+            }
+            return context.variables[t.slot];
+        }
+        if (!t.valid) {
+            error(context, "number " + t.text + " in radix = " + context.getRadix());
+        }
+        return t.value;
+    }
+
+    /**
+     * Evaluates a compiled expression on the operand stack of the context.
+     * Nothing is allocated unless an error is reported. Hot expressions run their
+     * compiled formula instead, see {@link CompiledExpression#nextTier(boolean)}.
+     * @param expression the compiled expression
+     * @param context the variables and the operand stack of the calling thread
+     * @return the result of the evaluation, or an unspecified value if an error occurred
+     */
+    private double evaluate(CompiledExpression expression, EvaluationContext context) {
+        boolean isDegOrRad = context.isDegOrRad();
+        if (!expression.isValid()) {
+            return error(context, "malformed expression");
+        }
+        if (context.meter != null) {
+            context.meter.charge(expression.getPostfix().length);
+        }
+        context.bind(expression);
+        CompiledFormula formula = expression.nextTier(isDegOrRad);
+        if (formula != null) {
+            double result = formula.evaluate(context.variables);
+            // NaN may come from a math error, which only the interpreter reports
+            if (!Double.isNaN(result)) {
+                return result;
+            }
+        }
+        return run(expression, null, 0, context);
+    }
+
+    /**
+     * Runs the postfix tokens of an expression or a function body on the operand stack
+     * of the context, above the operands of the callers.
+     * @param expression the compiled expression or function body
+     * @param function the function whose body runs, reading its arguments; null for an expression
+     * @param base the first free position of the operand stack
+     * @param context the variables and the operand stack of the calling thread
+     * @return the result of the evaluation, or an unspecified value if an error occurred
+     */
+    private double run(CompiledExpression expression, UserFunction function, int base, EvaluationContext context) {
+        boolean isDegOrRad = context.isDegOrRad();
+        if (context.stack.length < base + expression.getMaxDepth()) {
+            // Copied, since the operands of the callers are below base
+            context.stack = Arrays.copyOf(context.stack, Math.max(base + expression.getMaxDepth(),
+                    context.stack.length * 2));
+        }
+        double S[] = context.stack;
+        int top = base; // Position above the operands on the stack
+        Token[] elementMath = expression.getPostfix();
+        double num;
+        for (int i = 0; i < elementMath.length; i++) {
+            Token t = elementMath[i];
+            if (t.kind != Token.OPERATOR) {
+                if (function != null && t.kind == Token.VARIABLE) {
+                    S[top++] = function.getArguments()[t.slot]; // Parameters are the only variables of a body
+                    continue;
+                }
+                S[top++] = operandValue(t, i + 1 < elementMath.length && elementMath[i + 1].is(Operator.STORE),
+                        context);
+                continue;
+            }
+            if (t.is(Operator.CALL)) {
+                top -= t.arity;
+                num = call(function != null ? function.getCallee(i) : context.findFunction(t.text), t, top, context);
+                if (context.isError()) {
+                    return 0.0;
+                }
+                S = context.stack; // Grown by the call if its body needed more room
+                if (Trace.STEPS) {
+                    Trace.step("evaluate", t.text + " -> " + num);
+                }
+                S[top++] = num;
+                continue;
+            }
+            // Process operators; the stack depth was checked when the expression was compiled
+            double num1 = S[--top];
+            double num2 = t.arity == 2 ? S[--top] : 0.0;
+            switch (t.op) {
+            case NEGATE:
+                num = -num1; // Unary negation
+                break;
+            case SIN:
+                num = Math.sin(isDegOrRad ? convertToRad(num1) : num1); // Convert degrees to radians if needed
+                break;
+            case COS:
+                num = Math.cos(isDegOrRad ? convertToRad(num1) : num1);
+                break;
+            case TAN:
+                num = Math.tan(isDegOrRad ? convertToRad(num1) : num1);
+                break;
+            case LOG:
+                num = Math.log10(num1); // Base-10 logarithm
+                break;
+            case LN:
+                num = Math.log(num1); // Natural logarithm
+                break;
+            case RECIPROCAL:
+                if (num1 == 0) {
+                    return error(context, "division by zero");
+                }
+                num = 1 / num1; // Reciprocal
+                break;
+            case PERCENT:
+                num = num1 / 100; // Percentage
+                break;
+            case DEGREE:
+                num = convertToRad(num1); // Convert degrees to radians
+                break;
+            case SQUARE:
+                num = num1 * num1; // Square, same result as Math.pow(num1, 2)
+                break;
+            case SQRT:
+                if (!(num1 >= 0)) {
+                    return error(context, "sqrt of a negative number");
+                }
+                num = Math.sqrt(num1); // Square root
+                break;
+            case NOT:
+                if (!isIntegerNumber(num1) || num1 < 0) {
+                    return error(context, t.text + " needs a non-negative integer");
+                }
+                num = ~(long) num1; // Bitwise NOT
+                break;
+            case FACTORIAL:
+                if (isIntegerNumber(num1) && num1 < 0) {
+                    return error(context, t.text + " is undefined for negative integers");
+                }
+                num = Factorial.factorial(num1); // Factorial, or the gamma function for non-integers
+                break;
+            case STORE:
+                if (i > 0 && elementMath[i - 1].kind == Token.VARIABLE) {
+                    if (!context.store(elementMath[i - 1].slot, num2)) { // Store value in variable
+                        return error(context, "too many variables");
+                    }
+                    return num2;
+                }
+                return error(context, "sto needs a variable");
+            case ADD:
+                num = num2 + num1; // Addition
+                break;
+            case SUBTRACT:
+                num = num2 - num1; // Subtraction
+                break;
+            case MULTIPLY:
+                num = num2 * num1; // Multiplication
+                break;
+            case DIVIDE:
+                if (num1 == 0) {
+                    return error(context, "division by zero");
+                }
+                num = num2 / num1; // Division
+                break;
+            case POWER:
+                num = Math.pow(num2, num1); // Exponentiation
+                break;
+            case AND:
+            case OR:
+            case XOR:
+            case MOD:
+            case SHIFT_LEFT:
+            case SHIFT_RIGHT:
+                if (!isIntegerNumber(num1) || !isIntegerNumber(num2)
+                        || (t.op == Operator.MOD && num1 == 0)) {
+                    return error(context, t.text + " needs integers");
+                }
+                num = bitwise(t.op, (long) num2, (long) num1);
+                break;
+            default:
+                return error(context, "unexpected " + t.text);
+            }
+            if (Trace.STEPS) {
+                Trace.step("evaluate", t.text + " -> " + num);
+            }
+            S[top++] = num;
+        }
+        return S[top - 1];
+    }
+
+    /**
+     * Calls a user function with the arguments on the operand stack. The result comes from
+     * the memo table of the function if it is there; otherwise the body runs as bytecode,
+     * or in the interpreter, which also reports the errors a NaN result may stand for.
+     * @param function the called function, null if the context does not define it
+     * @param t the call token
+     * @param start the position of the first argument on the stack
+     * @param context the context of the evaluation
+     * @return the result of the call, or 0 if an error occurred
+     */
+    private double call(UserFunction function, Token t, int start, EvaluationContext context) {
+        if (function == null) {
+            return error(context, "undefined function " + t.text);
+        }
+        if (function.getArity() != t.arity) {
+            return error(context, t.text + " takes " + function.getArity() + " arguments");
+        }
+        double arguments[] = function.getArguments();
+        System.arraycopy(context.stack, start, arguments, 0, arguments.length);
+        double result = function.recall();
+        if (!Double.isNaN(result)) {
+            return result;
+        }
+        if (context.meter != null) {
+            context.meter.charge(function.getBody().getPostfix().length);
+        }
+        CompiledFormula formula = function.getFormula();
+        result = formula != null ? formula.evaluate(arguments) : Double.NaN;
+        if (Double.isNaN(result)) {
+            // The arguments were copied, so the body may use their place on the stack
+            result = run(function.getBody(), function, start, context);
+            if (context.isError()) {
+                return 0.0;
+            }
+        }
+        function.remember(result);
+        return result;
+    }
+
+    /**
+     * Reports a math error in the context and records the message in the trace.
+     * @param context the context of the failed evaluation
+     * @param message the description of the error
+     * @return 0, the result of an expression with an error
+     */
+    private double error(EvaluationContext context, String message) {
+        context.setError(message);
+        if (Trace.ERRORS) {
+            Trace.error("evaluate", message);
+        }
+        return 0.0;
+    }
+
+    /**
+     * Applies an integer operator to two operands.
+     * @param op one of AND, OR, XOR, MOD, SHIFT_LEFT, SHIFT_RIGHT
+     * @param a the left operand
+     * @param b the right operand
+     * @return the result
+     */
+    private double bitwise(Operator op, long a, long b) {
+        switch (op) {
+        case AND:
+            return a & b; // Bitwise AND
+        case OR:
+            return a | b; // Bitwise OR
+        case XOR:
+            return a ^ b; // Bitwise XOR
+        case MOD:
+            return a % b; // Modulo
+        case SHIFT_LEFT:
+            return a << b; // Left shift
+        default:
+            return (int) a >> (int) b; // Right shift
+        }
+    }
+}
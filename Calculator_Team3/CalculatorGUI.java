@@ -10,22 +10,25 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.DoubleUnaryOperator;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.ButtonGroup;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JColorChooser;
 import javax.swing.JComboBox;
 import javax.swing.JFrame;
@@ -39,7 +42,11 @@ import javax.swing.JRadioButton;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
 import javax.swing.JToggleButton;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 
 public class CalculatorGUI extends JFrame implements ActionListener, KeyListener {
@@ -99,7 +106,24 @@ public class CalculatorGUI extends JFrame implements ActionListener, KeyListener
     private List<CalculationHistory> historyList;
     private JPanel historyPanel;
     private JTextField searchField;
-    private String historyFilePath;
+    private HistoryStore historyStore;
+
+    // Background evaluation: the window stays responsive while an expression is computed
+    private static final int COMPUTING_DELAY_MILLIS = 150;
+    private static final int TIMEOUT_MILLIS = Integer.getInteger("calculator.gui.timeout", 10000);
+    private ExecutorService evaluator = newEvaluator(); // Replaced when a calculation times out
+    private Future<?> evaluation; // The running evaluation, null if there is none
+    private int evaluationId; // Results of evaluations with an older id are discarded
+    private Timer computingTimer, timeoutTimer;
+
+    // Live preview of the result while typing, shown in lbAns in a lighter color
+    private static final int PREVIEW_DELAY_MILLIS = Integer.getInteger("calculator.gui.previewDelay", 250);
+    private Timer previewTimer; // Restarted by every edit, so a burst of keystrokes is previewed once
+    private Future<?> preview; // The running preview, null if there is none
+
+    // Exact decimal results, such as 0.1 + 0.2 = 0.3, to this many significant digits
+    private static final int DECIMAL_PRECISION = Integer.getInteger("calculator.gui.precision", 34);
+    private JCheckBoxMenuItem miDecimal;
 
     public CalculatorGUI() {
         frame = new JFrame("Calculator Tool");
@@ -109,7 +133,7 @@ public class CalculatorGUI extends JFrame implements ActionListener, KeyListener
         frame.setJMenuBar(createMenuBar());
         
         // Initialize history
-        historyFilePath = "calculation_history.txt";
+        historyStore = new HistoryStore("calculation_history.txt");
         historyList = new ArrayList<>();
         loadHistory();
         
@@ -394,6 +418,10 @@ public class CalculatorGUI extends JFrame implements ActionListener, KeyListener
         mm.add(createMenuItem("Advanced", KeyEvent.VK_A));
         mm.add(createMenuItem("History", KeyEvent.VK_H));
         mm.add(createMenuItem("Customize", KeyEvent.VK_C));
+        miDecimal = new JCheckBoxMenuItem("Exact decimals");
+        miDecimal.setMnemonic(KeyEvent.VK_D);
+        miDecimal.addActionListener(e -> setMathContext());
+        mm.add(miDecimal);
         mm.add(createMenuItem("Exit", KeyEvent.VK_X));
         mb.add(mm);
         
@@ -430,6 +458,22 @@ public class CalculatorGUI extends JFrame implements ActionListener, KeyListener
         tfDisplay.setForeground(textColor);
         tfDisplay.setBackground(backgroundColor);
         tfDisplay.addKeyListener(this);
+        tfDisplay.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                schedulePreview();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                schedulePreview();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes do not change the expression
+            }
+        });
         panel.add(tfDisplay, BorderLayout.CENTER);
 
         lbAns = new JLabel("0");
@@ -721,6 +765,7 @@ public class CalculatorGUI extends JFrame implements ActionListener, KeyListener
     private void resetValue() {
         cLogic = new CalculatorLogic();
         cLogic.setError(false);
+        setMathContext();
         if (mode == 2) {
             setRadix();
         }
@@ -742,19 +787,174 @@ public class CalculatorGUI extends JFrame implements ActionListener, KeyListener
 
     // Calculate and display the result
     private void result() {
-        cLogic.setError(false);
+        result(null);
+    }
+
+    // Calculate the result in the background, then apply the function, if any, to the displayed result.
+    // A new calculation supersedes the running one, and one that takes longer than the timeout is cancelled.
+    private void result(DoubleUnaryOperator then) {
+        cancelEvaluation();
+        int id = evaluationId;
         String expression = tfDisplay.getText();
-        ans = cLogic.valueMath(expression);
-        
-        if (!cLogic.isError()) {
-            cLogic.var[0] = ans;
-            String result = cLogic.numberToString(ans, cLogic.getRadix(), cLogic.getSizeRound());
-            lbAns.setText(result);
-            
-            // Add to history
-            addToHistory(expression, result);
-        } else {
+        CalculatorLogic logic = cLogic;
+        evaluation = evaluator.submit(() -> evaluate(id, logic, expression, then));
+
+        // Show the computing state only if the result does not come at once, to avoid flicker
+        computingTimer = new Timer(COMPUTING_DELAY_MILLIS, e -> {
+            if (id == evaluationId) {
+                lbAns.setForeground(textColor);
+                lbAns.setText("Computing...");
+            }
+        });
+        computingTimer.setRepeats(false);
+        computingTimer.start();
+        timeoutTimer = new Timer(TIMEOUT_MILLIS, e -> {
+            if (id == evaluationId) {
+                cancelEvaluation();
+                replaceEvaluator();
+                lbAns.setForeground(textColor);
+                lbAns.setText("Timed out");
+            }
+        });
+        timeoutTimer.setRepeats(false);
+        timeoutTimer.start();
+    }
+
+    // Runs on the evaluation thread; only the result is handed back to the event dispatch thread
+    private void evaluate(int id, CalculatorLogic logic, String expression, DoubleUnaryOperator then) {
+        String result = null, shown = null;
+        double value = 0;
+        try {
+            logic.setError(false);
+            // Decimal arithmetic only applies to decimal numbers
+            boolean isDecimal = logic.getMathContext() != null && logic.getRadix() == 10;
+            BigDecimal decimal = isDecimal ? logic.valueMathDecimal(expression) : null;
+            value = isDecimal ? (decimal != null ? decimal.doubleValue() : 0) : logic.valueMath(expression);
+            if (Thread.interrupted()) {
+                return; // Superseded or timed out while computing: ans stays unchanged
+            }
+            if (!logic.isError()) {
+                logic.setAns(value);
+                result = isDecimal ? logic.decimalToString(decimal)
+                        : logic.numberToString(value, logic.getRadix(), logic.getSizeRound());
+                shown = result;
+                if (then != null) {
+                    value = then.applyAsDouble(value);
+                    logic.setAns(value);
+                    shown = logic.numberToString(value, logic.getRadix(), logic.getSizeRound());
+                }
+            }
+        } catch (CancellationException e) {
+            return;
+        } catch (RuntimeException e) {
+            // Unexpected failures are shown like math errors
+        }
+        double finalValue = value;
+        String finalResult = result, finalShown = shown;
+        SwingUtilities.invokeLater(() -> showResult(id, expression, finalValue, finalResult, finalShown));
+    }
+
+    // Display a result computed in the background, unless a newer calculation superseded it
+    private void showResult(int id, String expression, double value, String result, String shown) {
+        if (id != evaluationId) {
+            return;
+        }
+        stopEvaluationTimers();
+        evaluation = null;
+        lbAns.setForeground(textColor);
+        if (result == null) {
             lbAns.setText("Math error!");
+            return;
+        }
+        ans = value;
+        lbAns.setText(shown);
+
+        // Add to history
+        addToHistory(expression, result);
+    }
+
+    // Cancel the running calculation and preview, if any, so that their results are never displayed
+    private void cancelEvaluation() {
+        evaluationId++;
+        stopEvaluationTimers();
+        if (evaluation != null) {
+            evaluation.cancel(true);
+            evaluation = null;
+        }
+        cancelPreview();
+    }
+
+    // An operation that does not check for interruption, like a huge multiplication, can keep
+    // a cancelled calculation running, so later calculations and previews get a new thread
+    // instead of queuing behind it, and a copy of the logic the old thread may still change.
+    // The old thread is interrupted and exits once it finishes.
+    private void replaceEvaluator() {
+        evaluator.shutdownNow();
+        evaluator = newEvaluator();
+        cLogic = cLogic.copy();
+    }
+
+    private static ExecutorService newEvaluator() {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "calculator-evaluation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Preview the result once the user stops typing for a moment
+    private void schedulePreview() {
+        if (previewTimer == null) {
+            previewTimer = new Timer(PREVIEW_DELAY_MILLIS, e -> preview());
+            previewTimer.setRepeats(false);
+        }
+        cancelPreview();
+        previewTimer.restart();
+    }
+
+    // Evaluate the expression being typed in the background, only compiling what changed since the last preview
+    private void preview() {
+        String expression = tfDisplay.getText();
+        if (evaluation != null || expression.trim().isEmpty()) {
+            return; // A calculation is running, or there is nothing to preview
+        }
+        int id = evaluationId;
+        CalculatorLogic logic = cLogic;
+        preview = evaluator.submit(() -> {
+            double value;
+            try {
+                value = logic.previewMath(expression);
+            } catch (RuntimeException e) {
+                return; // Cancelled by a newer edit or calculation
+            }
+            String shown = Double.isNaN(value) ? "" : logic.numberToString(value, logic.getRadix(), logic.getSizeRound());
+            SwingUtilities.invokeLater(() -> showPreview(id, expression, shown));
+        });
+    }
+
+    // Display a preview, unless the expression changed or a calculation started since
+    private void showPreview(int id, String expression, String shown) {
+        if (id != evaluationId || !expression.equals(tfDisplay.getText())) {
+            return;
+        }
+        preview = null;
+        lbAns.setForeground(colorDisableStats);
+        lbAns.setText(shown);
+    }
+
+    private void cancelPreview() {
+        if (preview != null) {
+            preview.cancel(true);
+            preview = null;
+        }
+    }
+
+    private void stopEvaluationTimers() {
+        if (computingTimer != null) {
+            computingTimer.stop();
+        }
+        if (timeoutTimer != null) {
+            timeoutTimer.stop();
         }
     }
 
@@ -766,9 +966,15 @@ public class CalculatorGUI extends JFrame implements ActionListener, KeyListener
         tfDisplay.setText("");
         tfDisplay.requestFocus();
 
+        lbAns.setForeground(textColor);
         lbAns.setText("0");
     }
 
+    // Select decimal or double arithmetic from the menu
+    private void setMathContext() {
+        cLogic.setMathContext(miDecimal.isSelected() ? new MathContext(DECIMAL_PRECISION) : null);
+    }
+
     private void setDegOrRad() {
         if (radRad.isSelected()) {
             cLogic.setDegOrRad(false);
@@ -827,6 +1033,7 @@ public class CalculatorGUI extends JFrame implements ActionListener, KeyListener
 
         // Handle button actions
         if (mode != 2 && evt.getSource() == btnArr[0]) {
+            cancelEvaluation();
             resetValue();
             actionCE();
             return;
@@ -861,12 +1068,7 @@ public class CalculatorGUI extends JFrame implements ActionListener, KeyListener
                 return;
             }
             if (command.equals("ln")) {
-                result();
-                if (!cLogic.isError()) {
-                    cLogic.var[0] = Math.log(ans);
-                    lbAns.setText(cLogic.numberToString(Math.log(ans), cLogic.getRadix(),
-                    cLogic.getSizeRound()));
-                }
+                result(Math::log);
                 return;
             }
         }
@@ -912,14 +1114,8 @@ public class CalculatorGUI extends JFrame implements ActionListener, KeyListener
     
     // Save history to file
     private void saveHistory() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(historyFilePath))) {
-            for (CalculationHistory history : historyList) {
-                // Write in format: expression|result|timestamp
-                writer.write(history.getExpression() + "|" + 
-                             history.getResult() + "|" + 
-                             history.getTimestamp());
-                writer.newLine();
-            }
+        try {
+            historyStore.save(historyList);
         } catch (IOException e) {
             System.out.println("Error saving history: " + e.getMessage());
         }
@@ -927,23 +1123,10 @@ public class CalculatorGUI extends JFrame implements ActionListener, KeyListener
     
     // Load history from file
     private void loadHistory() {
-        File file = new File(historyFilePath);
-        if (!file.exists()) {
-            return; // No history file yet
-        }
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(historyFilePath))) {
-            String line;
+        try {
+            List<CalculationHistory> saved = historyStore.load();
             historyList.clear();
-            
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|", 3);
-                if (parts.length == 3) {
-                    CalculationHistory history = new CalculationHistory(
-                        parts[0], parts[1], parts[2]);
-                    historyList.add(history);
-                }
-            }
+            historyList.addAll(saved);
         } catch (IOException e) {
             System.out.println("Error loading history: " + e.getMessage());
         }
@@ -1276,28 +1459,3 @@ public class CalculatorGUI extends JFrame implements ActionListener, KeyListener
         }
     }
 }
-
-// Class to represent a calculation history item
-class CalculationHistory {
-    private String expression;
-    private String result;
-    private String timestamp;
-    
-    public CalculationHistory(String expression, String result, String timestamp) {
-        this.expression = expression;
-        this.result = result;
-        this.timestamp = timestamp;
-    }
-    
-    public String getExpression() {
-        return expression;
-    }
-    
-    public String getResult() {
-        return result;
-    }
-    
-    public String getTimestamp() {
-        return timestamp;
-    }
-}
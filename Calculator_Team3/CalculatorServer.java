@@ -0,0 +1,420 @@
+package Calculator_Team3;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A local HTTP service evaluating expressions with a shared {@link CalculatorEngine}.
+ * The endpoints take one input per line in the body of a POST request, or a single input
+ * in the query string of a GET request, and answer with one result per line:
+ * <ul>
+ * <li>{@code /eval} evaluates expressions ({@code expr} parameter), like the headless mode</li>
+ * <li>{@code /format} converts decimal numbers ({@code value} parameter) to the radix</li>
+ * <li>{@code /prime} factorizes numbers ({@code value} parameter)</li>
+ * <li>{@code /stats} reports request counts, latency percentiles and cache statistics</li>
+ * </ul>
+ * The query parameters {@code radix}, {@code angle} ({@code deg} or {@code rad}),
+ * {@code round} and {@code ans} set the calculation for the request.
+ * Requests run on virtual threads when the JVM has them, otherwise on a fixed thread pool.
+ * Every expression and factorization is limited by the {@link EvaluationBudget} of the
+ * {@code calculator.budget.*} system properties, and one over budget answers with the limit
+ * it exceeded.
+ */
+public class CalculatorServer {
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final int BACKLOG = 1024;
+    private static final int MAX_BODY_BYTES = 16 << 20;
+    private static final String INVALID_NUMBER = "Invalid number";
+    private static final double PERCENTILES[] = { 50, 90, 99, 99.9 };
+    private static final String PERCENTILE_NAMES[] = { "p50", "p90", "p99", "p999" };
+    private static final String USAGE = "usage: Main --server [--host address] [--port number] [--threads count]";
+
+    private final CalculatorEngine engine;
+    private final EvaluationBudget budget = EvaluationBudget.fromProperties();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean isVirtual;
+    private final Endpoint endpoints[];
+    private final long startTime = System.nanoTime();
+
+    /**
+     * Creates a server; it accepts requests once started.
+     * @param engine the engine evaluating the expressions
+     * @param address the address and port to listen on; port 0 picks a free port
+     * @param threads the size of the thread pool used when virtual threads are not available
+     * @throws IOException if the address cannot be bound
+     */
+    public CalculatorServer(CalculatorEngine engine, InetSocketAddress address, int threads) throws IOException {
+        this.engine = engine;
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.isVirtual = virtual != null;
+        this.executor = isVirtual ? virtual : Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "calculator-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.endpoints = new Endpoint[] { new EvalEndpoint(), new FormatEndpoint(), new PrimeEndpoint(),
+                new StatsEndpoint() };
+        // The JDK server flushes headers and body separately; with Nagle's algorithm every
+        // keep-alive response would wait for a delayed acknowledgement
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.server = HttpServer.create(address, BACKLOG);
+        for (Endpoint endpoint : endpoints) {
+            server.createContext(endpoint.path, endpoint);
+        }
+        server.setExecutor(executor);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor exists from Java 21; the build targets older JVMs too
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server, letting running requests finish for up to a second.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the address the server listens on.
+     * @return the bound address and port
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Checks if requests run on virtual threads.
+     * @return true for virtual threads, false for a platform thread pool
+     */
+    public boolean isVirtual() {
+        return isVirtual;
+    }
+
+    /**
+     * Runs the server until the JVM exits.
+     * @param args the options
+     * @return 0 once started, 2 on invalid arguments, 1 if the server cannot start
+     */
+    static int run(String[] args) {
+        String host = "127.0.0.1";
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors() * 2;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--host") && i + 1 < args.length) {
+                    host = args[++i];
+                } else if (args[i].equals("--port") && i + 1 < args.length) {
+                    port = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else {
+                    throw new IllegalArgumentException("unexpected argument: " + args[i]);
+                }
+            }
+            if (port < 0 || port > 65535 || threads < 1) {
+                throw new IllegalArgumentException("invalid port or thread count");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+        try {
+            CalculatorServer server = new CalculatorServer(new CalculatorEngine(), new InetSocketAddress(host, port),
+                    threads);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            InetSocketAddress address = server.getAddress();
+            System.err.println("Listening on http://" + address.getHostString() + ":" + address.getPort() + "/ ("
+                    + (server.isVirtual() ? "virtual threads" : threads + " threads") + ")");
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Cannot start the server: " + e);
+            return 1;
+        }
+    }
+
+    // Handles one path: parses the request, answers it and records the latency
+    private abstract class Endpoint implements HttpHandler {
+        final String path;
+        final String parameter; // Query parameter holding the input of a GET request
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder failures = new LongAdder();
+
+        Endpoint(String path, String parameter) {
+            this.path = path;
+            this.parameter = parameter;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            long start = System.nanoTime();
+            try {
+                int status = 200;
+                String response;
+                try {
+                    response = answer(exchange);
+                } catch (IllegalArgumentException e) {
+                    status = 400;
+                    response = e.getMessage() + "\n";
+                } catch (RequestException e) {
+                    status = e.status;
+                    response = e.getMessage() + "\n";
+                }
+                if (status != 200) {
+                    failures.increment();
+                }
+                byte bytes[] = response.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            } finally {
+                exchange.close();
+                latency.record(System.nanoTime() - start);
+            }
+        }
+
+        private String answer(HttpExchange exchange) throws IOException, RequestException {
+            // Contexts match by prefix; only the exact path is an endpoint
+            if (!exchange.getRequestURI().getPath().equals(path)) {
+                throw new RequestException(404, "not found");
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String input;
+            if (exchange.getRequestMethod().equals("POST")) {
+                input = readBody(exchange);
+            } else if (exchange.getRequestMethod().equals("GET")) {
+                input = query.getOrDefault(parameter, "");
+            } else {
+                throw new RequestException(405, "method not allowed");
+            }
+            CalculatorLogic logic = new CalculatorLogic(engine);
+            logic.setBudget(budget);
+            logic.setRadix(intParameter(query, "radix", 10));
+            if (logic.getRadix() != 2 && logic.getRadix() != 8 && logic.getRadix() != 10
+                    && logic.getRadix() != 16) {
+                throw new IllegalArgumentException("radix must be 2, 8, 10 or 16");
+            }
+            String angle = query.getOrDefault("angle", "deg");
+            if (!angle.equals("deg") && !angle.equals("rad")) {
+                throw new IllegalArgumentException("angle must be deg or rad");
+            }
+            logic.setDegOrRad(angle.equals("deg"));
+            logic.setSizeRound(intParameter(query, "round", 10));
+            double ans = query.containsKey("ans") ? parseNumber(query.get("ans")) : 0;
+            if (Double.isNaN(ans)) {
+                throw new IllegalArgumentException("ans must be a number: " + query.get("ans"));
+            }
+
+            return respond(logic, input, ans);
+        }
+
+        /**
+         * Computes the response body of a request.
+         * @param logic the calculation logic with the settings of the request
+         * @param input the body of a POST request, or the input parameter of a GET request
+         * @param ans the value of ans at the start of every expression
+         * @return the response text
+         */
+        abstract String respond(CalculatorLogic logic, String input, double ans);
+    }
+
+    private final class EvalEndpoint extends Endpoint {
+        EvalEndpoint() {
+            super("/eval", "expr");
+        }
+
+        @Override
+        String respond(CalculatorLogic logic, String input, double ans) {
+            return eachLine(input, line -> BulkEvaluator.evaluateLine(logic, line, ans));
+        }
+    }
+
+    private final class FormatEndpoint extends Endpoint {
+        FormatEndpoint() {
+            super("/format", "value");
+        }
+
+        @Override
+        String respond(CalculatorLogic logic, String input, double ans) {
+            return eachLine(input, line -> {
+                double num = parseNumber(line);
+                return Double.isNaN(num) ? INVALID_NUMBER
+                        : logic.numberToString(num, logic.getRadix(), logic.getSizeRound());
+            });
+        }
+    }
+
+    private final class PrimeEndpoint extends Endpoint {
+        PrimeEndpoint() {
+            super("/prime", "value");
+        }
+
+        @Override
+        String respond(CalculatorLogic logic, String input, double ans) {
+            return eachLine(input, line -> {
+                double num = parseNumber(line);
+                try {
+                    return Double.isNaN(num) ? INVALID_NUMBER : logic.primeMulti(num);
+                } catch (BudgetExceededException e) {
+                    return e.getMessage();
+                }
+            });
+        }
+    }
+
+    // Reports the counters of the server as "name value" lines
+    private final class StatsEndpoint extends Endpoint {
+        StatsEndpoint() {
+            super("/stats", "");
+        }
+
+        @Override
+        String respond(CalculatorLogic logic, String input, double ans) {
+            StringBuilder stats = new StringBuilder();
+            stat(stats, "uptime_s", String.format(Locale.ROOT, "%.3f", (System.nanoTime() - startTime) / 1e9));
+            stat(stats, "threads", isVirtual ? "virtual" : "platform");
+            ExpressionCache cache = engine.getExpressionCache();
+            stat(stats, "cache.size", cache.size());
+            stat(stats, "cache.capacity", cache.getCapacity());
+            stat(stats, "cache.hits", cache.getHitCount());
+            stat(stats, "cache.misses", cache.getMissCount());
+            stat(stats, "cache.evictions", cache.getEvictionCount());
+            for (Endpoint endpoint : endpoints) {
+                String name = endpoint.path.substring(1);
+                LatencyHistogram latency = endpoint.latency;
+                stat(stats, name + ".requests", latency.getCount());
+                stat(stats, name + ".failures", endpoint.failures.sum());
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    stat(stats, name + ".latency_us." + PERCENTILE_NAMES[i],
+                            micros(latency.getPercentile(PERCENTILES[i])));
+                }
+                stat(stats, name + ".latency_us.max", micros(latency.getMax()));
+            }
+            return stats.toString();
+        }
+
+        private void stat(StringBuilder stats, String name, Object value) {
+            stats.append(name).append(' ').append(value).append('\n');
+        }
+
+        private String micros(long nanos) {
+            return String.format(Locale.ROOT, "%.1f", nanos / 1e3);
+        }
+    }
+
+    // Answers every line of the input, an empty line for a blank line
+    private static String eachLine(String input, Function<String, String> answer) {
+        StringBuilder response = new StringBuilder();
+        int start = 0;
+        while (start < input.length()) {
+            int end = input.indexOf('\n', start);
+            if (end < 0) {
+                end = input.length();
+            }
+            String line = input.substring(start, end > start && input.charAt(end - 1) == '\r' ? end - 1 : end);
+            response.append(line.trim().isEmpty() ? "" : answer.apply(line)).append('\n');
+            start = end + 1;
+        }
+        return response.toString();
+    }
+
+    // Parses a decimal number, NaN if the text is not one
+    private static double parseNumber(String text) {
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException, RequestException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte body[] = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new RequestException(413, "body larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<String, String>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number: " + value);
+        }
+    }
+
+    // A request that cannot be answered, with its HTTP status
+    private static final class RequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
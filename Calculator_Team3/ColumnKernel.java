@@ -0,0 +1,381 @@
+package Calculator_Team3;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Evaluates one compiled expression over whole columns of variable values.
+ * Rows are processed in blocks, one operator at a time: every operator runs a tight
+ * loop over a block of operands, which the JIT compiler can unroll and vectorize,
+ * instead of walking the expression once per row. Constants stay scalars and are
+ * never expanded into blocks.
+ * Like {@link CompiledFormula}, a math error yields NaN for that row rather than
+ * stopping the evaluation, so the loops need no early exits.
+ */
+public final class ColumnKernel {
+    // Rows per block; the operand blocks of an expression stay in the CPU cache
+    static final int BLOCK_SIZE = 1024;
+
+    private final Token[] postfix;
+    private final int columnIndex[]; // Parameter index of each variable token
+    private final int maxDepth;
+    private final boolean isDegOrRad;
+    private final String parameters[];
+    private final CompiledExpression expression;
+    // Row-by-row fallback for expressions the block loops do not handle
+    private final CompiledFormula rowFormula;
+
+    ColumnKernel(CompiledExpression expression, boolean isDegOrRad) {
+        this.expression = expression;
+        this.postfix = expression.getPostfix();
+        this.maxDepth = expression.getMaxDepth();
+        this.isDegOrRad = isDegOrRad;
+        this.parameters = expression.getParameterNames();
+        this.columnIndex = new int[postfix.length];
+        for (int i = 0; i < postfix.length; i++) {
+            if (postfix[i].kind == Token.VARIABLE) {
+                columnIndex[i] = postfix[i].slot; // The slot is the parameter index
+            }
+        }
+        this.rowFormula = BytecodeCompiler.isCompilable(expression) ? null
+                : new InterpretedFormula(expression, isDegOrRad);
+    }
+
+    /**
+     * Gets the names of the variables bound to columns.
+     * @return the variable names in the order of the columns
+     */
+    public String[] getParameters() {
+        return parameters.clone();
+    }
+
+    /**
+     * Evaluates the expression for every row of the columns named after its variables.
+     * @param columns the column of each variable, by name; all of the same length.
+     *        Columns of variables the expression does not use are ignored
+     * @return the result of every row, NaN for rows with a math error
+     * @throws IllegalArgumentException if a variable has no column or the columns differ in length
+     */
+    public double[] evaluate(Map<String, double[]> columns) {
+        double ordered[][] = new double[parameters.length][];
+        for (int i = 0; i < parameters.length; i++) {
+            ordered[i] = columns.get(parameters[i]);
+            if (ordered[i] == null) {
+                throw new IllegalArgumentException("no column for variable " + parameters[i]);
+            }
+        }
+        // A constant expression uses no column but still gets one result per row
+        int rows = -1;
+        for (Map.Entry<String, double[]> column : columns.entrySet()) {
+            if (column.getValue() == null) {
+                continue; // Only the columns of unused variables may be null, as checked above
+            }
+            if (rows < 0) {
+                rows = column.getValue().length;
+            } else if (column.getValue().length != rows) {
+                throw new IllegalArgumentException("column " + column.getKey() + " has " + column.getValue().length
+                        + " rows, not " + rows);
+            }
+        }
+        rows = Math.max(rows, 0);
+        double out[] = new double[rows];
+        evaluate(ordered, out, 0, rows);
+        return out;
+    }
+
+    /**
+     * Evaluates the expression for a range of rows.
+     * @param columns the columns in the order of {@link #getParameters()}
+     * @param out the array receiving the results, NaN for rows with a math error
+     * @param from the first row
+     * @param to the row after the last one
+     * @throws IllegalArgumentException if a column or out has fewer than to rows
+     */
+    public void evaluate(double[][] columns, double[] out, int from, int to) {
+        if (columns.length < parameters.length) {
+            throw new IllegalArgumentException(parameters.length + " columns needed: " + columns.length);
+        }
+        // Checked up front, so that no result is written for a range that cannot be evaluated
+        for (int i = 0; i < parameters.length; i++) {
+            if (columns[i].length < to) {
+                throw new IllegalArgumentException("column " + parameters[i] + " has " + columns[i].length
+                        + " rows: " + to + " needed");
+            }
+        }
+        if (out.length < to) {
+            throw new IllegalArgumentException("out has " + out.length + " rows: " + to + " needed");
+        }
+        if (rowFormula != null) {
+            evaluateRows(columns, out, from, to);
+            return;
+        }
+        Registers r = new Registers(maxDepth);
+        for (int start = from; start < to; start += BLOCK_SIZE) {
+            int n = Math.min(BLOCK_SIZE, to - start);
+            int result = evaluateBlock(columns, start, n, r);
+            if (r.isScalar[result]) {
+                Arrays.fill(out, start, start + n, r.scalar[result]);
+            } else {
+                System.arraycopy(r.data[result], r.offset[result], out, start, n);
+            }
+        }
+    }
+
+    // The operand stack of a block: each entry is a scalar or n values of data starting at offset
+    private static final class Registers {
+        final double blocks[][]; // Scratch block owned by each stack position
+        final double data[][];
+        final int offset[];
+        final double scalar[];
+        final boolean isScalar[];
+
+        Registers(int depth) {
+            blocks = new double[depth][BLOCK_SIZE];
+            data = new double[depth][];
+            offset = new int[depth];
+            scalar = new double[depth];
+            isScalar = new boolean[depth];
+        }
+    }
+
+    // Runs the postfix tokens over n rows starting at start and returns the register of the result
+    private int evaluateBlock(double[][] columns, int start, int n, Registers r) {
+        int top = 0;
+        for (int k = 0; k < postfix.length; k++) {
+            Token t = postfix[k];
+            if (t.kind == Token.VARIABLE) {
+                // Columns are read in place, never copied
+                r.data[top] = columns[columnIndex[k]];
+                r.offset[top] = start;
+                r.isScalar[top++] = false;
+            } else if (t.kind != Token.OPERATOR) {
+                r.scalar[top] = t.value;
+                r.isScalar[top++] = true;
+            } else if (t.op.getArity() == 1) {
+                int x = top - 1;
+                if (r.isScalar[x]) {
+                    r.scalar[x] = MathFunctions.apply(t.op, r.scalar[x], 0, isDegOrRad);
+                } else {
+                    unary(t.op, r.data[x], r.offset[x], r.blocks[x], n);
+                    setBlock(r, x);
+                }
+            } else {
+                int a = top - 2, b = top - 1;
+                if (r.isScalar[a] && r.isScalar[b]) {
+                    r.scalar[a] = MathFunctions.apply(t.op, r.scalar[a], r.scalar[b], isDegOrRad);
+                } else if (r.isScalar[b]) {
+                    blockScalar(t.op, r.data[a], r.offset[a], r.scalar[b], r.blocks[a], n);
+                    setBlock(r, a);
+                } else if (r.isScalar[a]) {
+                    scalarBlock(t.op, r.scalar[a], r.data[b], r.offset[b], r.blocks[a], n);
+                    setBlock(r, a);
+                } else {
+                    blockBlock(t.op, r.data[a], r.offset[a], r.data[b], r.offset[b], r.blocks[a], n);
+                    setBlock(r, a);
+                }
+                top--;
+            }
+        }
+        return top - 1;
+    }
+
+    private static void setBlock(Registers r, int index) {
+        r.data[index] = r.blocks[index];
+        r.offset[index] = 0;
+        r.isScalar[index] = false;
+    }
+
+    // out = op(x)
+    private void unary(Operator op, double[] x, int xo, double[] out, int n) {
+        switch (op) {
+        case NEGATE:
+            for (int i = 0; i < n; i++) {
+                out[i] = -x[xo + i];
+            }
+            break;
+        case SQUARE:
+            for (int i = 0; i < n; i++) {
+                out[i] = x[xo + i] * x[xo + i];
+            }
+            break;
+        case SQRT:
+            for (int i = 0; i < n; i++) {
+                out[i] = Math.sqrt(x[xo + i]);
+            }
+            break;
+        case PERCENT:
+            for (int i = 0; i < n; i++) {
+                out[i] = x[xo + i] / 100;
+            }
+            break;
+        case DEGREE:
+            for (int i = 0; i < n; i++) {
+                out[i] = x[xo + i] * Math.PI / 180;
+            }
+            break;
+        case RECIPROCAL:
+            for (int i = 0; i < n; i++) {
+                out[i] = x[xo + i] == 0 ? Double.NaN : 1 / x[xo + i];
+            }
+            break;
+        case SIN:
+            for (int i = 0; i < n; i++) {
+                out[i] = Math.sin(isDegOrRad ? x[xo + i] * Math.PI / 180 : x[xo + i]);
+            }
+            break;
+        case COS:
+            for (int i = 0; i < n; i++) {
+                out[i] = Math.cos(isDegOrRad ? x[xo + i] * Math.PI / 180 : x[xo + i]);
+            }
+            break;
+        case TAN:
+            for (int i = 0; i < n; i++) {
+                out[i] = Math.tan(isDegOrRad ? x[xo + i] * Math.PI / 180 : x[xo + i]);
+            }
+            break;
+        case LOG:
+            for (int i = 0; i < n; i++) {
+                out[i] = Math.log10(x[xo + i]);
+            }
+            break;
+        case LN:
+            for (int i = 0; i < n; i++) {
+                out[i] = Math.log(x[xo + i]);
+            }
+            break;
+        default:
+            for (int i = 0; i < n; i++) {
+                out[i] = MathFunctions.apply(op, x[xo + i], 0, isDegOrRad);
+            }
+            break;
+        }
+    }
+
+    // out = a op b
+    private void blockBlock(Operator op, double[] a, int ao, double[] b, int bo, double[] out, int n) {
+        switch (op) {
+        case ADD:
+            for (int i = 0; i < n; i++) {
+                out[i] = a[ao + i] + b[bo + i];
+            }
+            break;
+        case SUBTRACT:
+            for (int i = 0; i < n; i++) {
+                out[i] = a[ao + i] - b[bo + i];
+            }
+            break;
+        case MULTIPLY:
+            for (int i = 0; i < n; i++) {
+                out[i] = a[ao + i] * b[bo + i];
+            }
+            break;
+        case DIVIDE:
+            for (int i = 0; i < n; i++) {
+                out[i] = b[bo + i] == 0 ? Double.NaN : a[ao + i] / b[bo + i];
+            }
+            break;
+        case POWER:
+            for (int i = 0; i < n; i++) {
+                out[i] = MathFunctions.power(a[ao + i], b[bo + i]);
+            }
+            break;
+        default:
+            for (int i = 0; i < n; i++) {
+                out[i] = MathFunctions.apply(op, a[ao + i], b[bo + i], isDegOrRad);
+            }
+            break;
+        }
+    }
+
+    // out = a op s
+    private void blockScalar(Operator op, double[] a, int ao, double s, double[] out, int n) {
+        switch (op) {
+        case ADD:
+            for (int i = 0; i < n; i++) {
+                out[i] = a[ao + i] + s;
+            }
+            break;
+        case SUBTRACT:
+            for (int i = 0; i < n; i++) {
+                out[i] = a[ao + i] - s;
+            }
+            break;
+        case MULTIPLY:
+            for (int i = 0; i < n; i++) {
+                out[i] = a[ao + i] * s;
+            }
+            break;
+        case DIVIDE:
+            if (s == 0) {
+                Arrays.fill(out, 0, n, Double.NaN);
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                out[i] = a[ao + i] / s;
+            }
+            break;
+        case POWER:
+            for (int i = 0; i < n; i++) {
+                out[i] = MathFunctions.power(a[ao + i], s);
+            }
+            break;
+        default:
+            for (int i = 0; i < n; i++) {
+                out[i] = MathFunctions.apply(op, a[ao + i], s, isDegOrRad);
+            }
+            break;
+        }
+    }
+
+    // out = s op b
+    private void scalarBlock(Operator op, double s, double[] b, int bo, double[] out, int n) {
+        switch (op) {
+        case ADD:
+            for (int i = 0; i < n; i++) {
+                out[i] = s + b[bo + i];
+            }
+            break;
+        case SUBTRACT:
+            for (int i = 0; i < n; i++) {
+                out[i] = s - b[bo + i];
+            }
+            break;
+        case MULTIPLY:
+            for (int i = 0; i < n; i++) {
+                out[i] = s * b[bo + i];
+            }
+            break;
+        case DIVIDE:
+            for (int i = 0; i < n; i++) {
+                out[i] = b[bo + i] == 0 ? Double.NaN : s / b[bo + i];
+            }
+            break;
+        case POWER:
+            for (int i = 0; i < n; i++) {
+                out[i] = MathFunctions.power(s, b[bo + i]);
+            }
+            break;
+        default:
+            for (int i = 0; i < n; i++) {
+                out[i] = MathFunctions.apply(op, s, b[bo + i], isDegOrRad);
+            }
+            break;
+        }
+    }
+
+    // Evaluates row by row, for stores and malformed expressions
+    private void evaluateRows(double[][] columns, double[] out, int from, int to) {
+        double variables[] = new double[parameters.length]; // By slot, which is the column index
+        for (int row = from; row < to; row++) {
+            for (int p = 0; p < variables.length; p++) {
+                variables[p] = columns[p][row];
+            }
+            out[row] = rowFormula.evaluate(variables);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnKernel[" + expression.getSource() + "]";
+    }
+}
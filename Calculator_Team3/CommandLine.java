@@ -0,0 +1,259 @@
+package Calculator_Team3;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The headless mode of the calculator: reads one expression per line from standard input
+ * or a file and writes one result per line to standard output.
+ * Files are memory-mapped and evaluated by a {@link BulkEvaluator}. Standard input is
+ * read through a buffered reader: lines are evaluated in batches on several threads and written in input order. Only a
+ * few batches per thread are held in memory at a time, so inputs of any size stream through.
+ * Every line starts with ans set to 0, so the results do not depend on the thread count.
+ * With --table, an expression is instead tabulated over a range of one of its variables
+ * by a {@link Tabulator}, and every point is written as the variable and the result
+ * separated by a tab, as the points are ready.
+ */
+final class CommandLine {
+    static final String USAGE = "usage: Main --cli [--radix 2|8|10|16] [--deg|--rad] [--round digits]"
+            + " [--threads count] [file|-]\n"
+            + "       Main --cli [options] --table expression variable start end points";
+
+    // Lines per batch; large enough that handing batches to threads costs little
+    private static final int BATCH_LINES = 4096;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final CalculatorEngine engine = new CalculatorEngine();
+    private int radix = 10;
+    private boolean isDegOrRad = true;
+    private int sizeRound = 10;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String input = "-";
+    // Expression and variable to tabulate, or null to evaluate lines
+    private String table[];
+    private double tableStart, tableEnd;
+    private long tablePoints;
+
+    /**
+     * Runs the headless mode.
+     * @param args the options and the input file; standard input if there is no file or it is "-"
+     * @return the exit status: 0 on success, 1 on an I/O error, 2 on invalid arguments
+     */
+    static int run(String[] args) {
+        CommandLine commandLine = new CommandLine();
+        try {
+            commandLine.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+        try {
+            if (commandLine.table != null) {
+                commandLine.processTable();
+            } else if (commandLine.input.equals("-")) {
+                commandLine.processStandardInput();
+            } else {
+                commandLine.processFile();
+            }
+            return 0;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage()); // An invalid variable or range for --table
+            return 2;
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e);
+            return 1;
+        }
+    }
+
+    private void processStandardInput() throws IOException {
+        try (Reader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), BUFFER_SIZE);
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            process(in, out);
+        }
+    }
+
+    private void processFile() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel()) {
+            new BulkEvaluator(engine, pool).evaluate(Paths.get(input), out, radix, isDegOrRad, sizeRound);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void processTable() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            new Tabulator(engine, pool).stream(table[0], table[1], tableStart, tableEnd, tablePoints,
+                    new EvaluationContext(radix, isDegOrRad), (first, x, y, count) -> {
+                        for (int i = 0; i < count; i++) {
+                            out.write(engine.numberToString(x[i], radix, sizeRound));
+                            out.write('\t');
+                            out.write(Double.isNaN(y[i]) ? BulkEvaluator.MATH_ERROR
+                                    : engine.numberToString(y[i], radix, sizeRound));
+                            out.write('\n');
+                        }
+                    });
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void parse(String[] args) {
+        boolean hasInput = false;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--deg")) {
+                isDegOrRad = true;
+            } else if (arg.equals("--rad")) {
+                isDegOrRad = false;
+            } else if (arg.equals("--radix")) {
+                radix = intOption(args, ++i, arg);
+                if (radix != 2 && radix != 8 && radix != 10 && radix != 16) {
+                    throw new IllegalArgumentException("radix must be 2, 8, 10 or 16: " + radix);
+                }
+            } else if (arg.equals("--round")) {
+                sizeRound = intOption(args, ++i, arg);
+                if (sizeRound < 0) {
+                    throw new IllegalArgumentException("round must not be negative: " + sizeRound);
+                }
+            } else if (arg.equals("--threads")) {
+                threads = intOption(args, ++i, arg);
+                if (threads < 1) {
+                    throw new IllegalArgumentException("threads must be positive: " + threads);
+                }
+            } else if (arg.equals("--table")) {
+                if (i + 5 >= args.length) {
+                    throw new IllegalArgumentException("--table needs an expression, a variable, start, end and points");
+                }
+                table = Arrays.copyOfRange(args, i + 1, i + 3);
+                tableStart = doubleOption(args, i + 3, "start");
+                tableEnd = doubleOption(args, i + 4, "end");
+                tablePoints = intOption(args, i + 5, "points");
+                i += 5;
+            } else if (arg.startsWith("--") || hasInput) {
+                throw new IllegalArgumentException("unexpected argument: " + arg);
+            } else {
+                input = arg;
+                hasInput = true;
+            }
+        }
+    }
+
+    private static double doubleOption(String[] args, int index, String option) {
+        try {
+            return Double.parseDouble(args[index]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " needs a number: " + args[index]);
+        }
+    }
+
+    private static int intOption(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        try {
+            return Integer.parseInt(args[index]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " needs a number: " + args[index]);
+        }
+    }
+
+    /**
+     * Evaluates every line of the input and writes the results in order.
+     * @param in the expressions, one per line
+     * @param out receives one line per input line, see {@link BulkEvaluator#evaluateLine}
+     * @throws IOException if reading or writing fails
+     */
+    void process(Reader in, Writer out) throws IOException {
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in
+                : new BufferedReader(in, BUFFER_SIZE);
+        if (threads == 1) {
+            String batch[];
+            while ((batch = readBatch(reader)) != null) {
+                out.write(evaluateBatch(batch));
+            }
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "calculator-cli");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // Batches being evaluated, oldest first; bounded so a slow output limits the reading
+            ArrayDeque<Future<String>> pending = new ArrayDeque<Future<String>>();
+            String batch[];
+            while ((batch = readBatch(reader)) != null) {
+                String lines[] = batch;
+                pending.add(pool.submit(() -> evaluateBatch(lines)));
+                if (pending.size() >= threads * 2) {
+                    out.write(result(pending.remove()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                out.write(result(pending.remove()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Reads up to BATCH_LINES lines, or returns null at the end of the input
+    private static String[] readBatch(BufferedReader reader) throws IOException {
+        String lines[] = new String[BATCH_LINES];
+        int count = 0;
+        String line;
+        while (count < BATCH_LINES && (line = reader.readLine()) != null) {
+            lines[count++] = line;
+        }
+        if (count == 0) {
+            return null;
+        }
+        return count == BATCH_LINES ? lines : Arrays.copyOf(lines, count);
+    }
+
+    private static String result(Future<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("evaluation failed", e.getCause());
+        }
+    }
+
+    // Evaluates the lines of a batch and returns their results as text
+    private String evaluateBatch(String[] lines) {
+        CalculatorLogic logic = new CalculatorLogic(engine);
+        logic.setRadix(radix);
+        logic.setDegOrRad(isDegOrRad);
+        logic.setSizeRound(sizeRound);
+        StringBuilder text = new StringBuilder(lines.length * 16);
+        for (String line : lines) {
+            text.append(BulkEvaluator.evaluateLine(logic, line, 0)).append('\n');
+        }
+        return text.toString();
+    }
+}
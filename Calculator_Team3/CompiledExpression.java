@@ -0,0 +1,277 @@
+package Calculator_Team3;
+
+import java.math.BigDecimal;
+
+/**
+ * An expression that has already been tokenized and converted to postfix notation.
+ * Instances are created once per distinct input and reused by the expression cache,
+ * so evaluating the same formula again skips lexing and the Shunting-yard pass.
+ */
+class CompiledExpression {
+    // Evaluation counts at which an expression moves to the method handle tier, then to bytecode
+    static final int METHOD_HANDLE_THRESHOLD = Integer.getInteger("calculator.tier.methodHandle", 200);
+    static final int BYTECODE_THRESHOLD = Integer.getInteger("calculator.tier.bytecode", 10000);
+
+    private final String source;
+    private final Token[] postfix;
+    private final boolean valid;
+    private final int maxDepth;
+    private final String variableNames[]; // By slot
+    private final Token calls[]; // Words followed by "(", as call tokens where they named a function
+    private final int tokenCount;
+    private final int nestingDepth;
+    private final CompiledExpression original;
+    private static final int INTERPRETED = 0, METHOD_HANDLES = 1, FINAL_TIER = 2;
+
+    private int invocations;
+    private volatile int tier = INTERPRETED;
+    private volatile CompiledFormula formula;
+    private volatile BigDecimal decimals[]; // Exact values of the literals, computed on first use
+    private boolean binaryLiterals; // Written before decimals, so it is visible once decimals is
+
+    /**
+     * Creates a compiled expression.
+     * @param source the normalized input the expression was compiled from
+     * @param postfix the tokens of the expression in postfix notation
+     * @param valid false if the expression could not be parsed (e.g. unbalanced parentheses)
+     * @param calls the words followed by "(", as call tokens where the context compiling
+     *        the source defined a function of that name
+     * @param tokenCount the number of tokens the lexer found in the source
+     * @param nestingDepth the deepest nesting of parentheses in the source
+     */
+    CompiledExpression(String source, Token[] postfix, boolean valid, Token[] calls, int tokenCount,
+            int nestingDepth) {
+        this(source, postfix, valid, calls, tokenCount, nestingDepth, null);
+    }
+
+    /**
+     * Creates the optimized version of a valid expression, which keeps the original
+     * for evaluations that need its literals as they were written.
+     * @param original the expression as it was parsed
+     * @param postfix the optimized postfix tokens
+     */
+    CompiledExpression(CompiledExpression original, Token[] postfix) {
+        this(original.source, postfix, true, original.calls, original.tokenCount, original.nestingDepth,
+                original.original);
+    }
+
+    private CompiledExpression(String source, Token[] postfix, boolean valid, Token[] calls, int tokenCount,
+            int nestingDepth, CompiledExpression original) {
+        this.source = source;
+        this.postfix = postfix;
+        this.calls = calls;
+        this.tokenCount = tokenCount;
+        this.nestingDepth = nestingDepth;
+        this.original = original != null ? original : this;
+        // Simulate the operand stack once so evaluation needs neither bounds checks nor growth
+        int depth = 0, max = 0;
+        for (Token t : postfix) {
+            if (!valid) {
+                break;
+            }
+            if (t.kind != Token.OPERATOR) {
+                max = Math.max(max, ++depth);
+            } else if (depth < t.arity || t.arity == 0) {
+                valid = false; // Missing operand, or a parenthesis or comma left in the output
+            } else if (t.is(Operator.STORE)) {
+                break; // Evaluation stops at a store
+            } else {
+                depth = depth - t.arity + 1;
+            }
+        }
+        this.valid = valid && max > 0;
+        this.maxDepth = max;
+
+        // The variables are numbered in order of first use, so their slots are the parameter
+        // indexes of compiled formulas
+        int slotCount = 0;
+        for (Token t : postfix) {
+            if (t.kind == Token.VARIABLE) {
+                slotCount = Math.max(slotCount, t.slot + 1);
+            }
+        }
+        this.variableNames = new String[slotCount];
+        for (Token t : postfix) {
+            if (t.kind == Token.VARIABLE) {
+                variableNames[t.slot] = t.text;
+            }
+        }
+    }
+
+    /**
+     * Gets the normalized input this expression was compiled from.
+     * @return the normalized source string
+     */
+    String getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the postfix tokens of the expression.
+     * @return the tokens in evaluation order
+     */
+    Token[] getPostfix() {
+        return postfix;
+    }
+
+    /**
+     * Checks if the expression was parsed successfully.
+     * @return true if the postfix tokens can be evaluated
+     */
+    boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Gets the largest number of operands on the stack at any time during evaluation.
+     * @return the stack size needed to evaluate the expression
+     */
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Gets the number of tokens the lexer found in the source, which an
+     * {@link EvaluationBudget} limits.
+     * @return the token count
+     */
+    int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Gets the deepest nesting of parentheses in the source, which an
+     * {@link EvaluationBudget} limits.
+     * @return the nesting depth, 0 without parentheses
+     */
+    int getNestingDepth() {
+        return nestingDepth;
+    }
+
+    /**
+     * Gets the expression as it was parsed, before the optimizer folded its constants
+     * into doubles, for evaluations in decimal arithmetic.
+     * @return the original expression, or this expression if it was not optimized
+     */
+    CompiledExpression getOriginal() {
+        return original;
+    }
+
+    /**
+     * Gets the exact decimal values of the literals as they are written, computed on first use.
+     * @return the value of each literal by position in the postfix tokens, null for other tokens
+     *         and for malformed numbers
+     */
+    BigDecimal[] getDecimals() {
+        BigDecimal values[] = decimals;
+        if (values == null) {
+            values = new BigDecimal[postfix.length];
+            boolean exact = true;
+            for (int i = 0; i < postfix.length; i++) {
+                Token t = postfix[i];
+                if (t.kind == Token.LITERAL && t.valid) {
+                    try {
+                        values[i] = new BigDecimal(t.text);
+                    } catch (NumberFormatException e) {
+                        values[i] = new BigDecimal(t.value); // A form only Double.parseDouble reads
+                    }
+                    exact &= values[i].compareTo(new BigDecimal(t.value)) == 0;
+                }
+            }
+            binaryLiterals = exact;
+            decimals = values;
+        }
+        return values;
+    }
+
+    /**
+     * Checks if the double value of every literal is exactly its decimal value, as for
+     * {@code 12.5} but not for {@code 0.1}, so that double arithmetic can be exact.
+     * @return true if no literal was rounded to binary
+     */
+    boolean hasBinaryLiterals() {
+        getDecimals(); // Reading decimals makes binaryLiterals visible
+        return binaryLiterals;
+    }
+
+    /**
+     * Gets the number of variable slots the expression reads or writes.
+     * @return one more than the highest slot used, 0 without variables
+     */
+    int getSlotCount() {
+        return variableNames.length;
+    }
+
+    /**
+     * Gets the name of a variable of the expression.
+     * @param slot the slot of the variable
+     * @return the name, or null for a parameter of a function body that the body does not use
+     */
+    String getVariableName(int slot) {
+        return variableNames[slot];
+    }
+
+    /**
+     * Checks if the expression parses the same way with the functions of a context.
+     * A word followed by "(" is a call only if the context defines a function of that
+     * name, so the expression must be compiled again for a context that differs on one.
+     * @param context the context of the evaluation, or null for one without functions
+     * @return true if every word followed by "(" is a call exactly when it names a function
+     */
+    boolean hasCallsOf(EvaluationContext context) {
+        for (Token t : calls) {
+            boolean isFunction = context != null && context.findFunction(t.text) != null;
+            if (isFunction != t.is(Operator.CALL)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the names of the variables used by the expression, in order of first use,
+     * which is the order of their slots.
+     * @return the parameter names
+     */
+    String[] getParameterNames() {
+        return variableNames.clone();
+    }
+
+    /**
+     * Counts an evaluation and compiles the expression once it crosses a tier threshold.
+     * Expressions start in the interpreter, move to a method handle tree that is cheap
+     * to build, and end up as generated bytecode if they stay hot. Threads sharing the
+     * expression may lose some counts, which only delays tiering slightly.
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @return the formula of the current tier, or null while the expression is interpreted
+     */
+    CompiledFormula nextTier(boolean isDegOrRad) {
+        if (tier == FINAL_TIER) {
+            return formula;
+        }
+        int count = ++invocations;
+        if (count >= BYTECODE_THRESHOLD || count >= METHOD_HANDLE_THRESHOLD && tier == INTERPRETED) {
+            tierUp(count, isDegOrRad);
+        }
+        return formula;
+    }
+
+    private synchronized void tierUp(int count, boolean isDegOrRad) {
+        if (tier == INTERPRETED) {
+            formula = MethodHandleCompiler.compile(this, isDegOrRad);
+            if (formula != null) {
+                tier = METHOD_HANDLES;
+                return;
+            }
+            // Too long for a handle tree, or not compilable at all
+            formula = BytecodeCompiler.compile(this, isDegOrRad);
+            tier = FINAL_TIER;
+        } else if (tier == METHOD_HANDLES && count >= BYTECODE_THRESHOLD) {
+            CompiledFormula compiled = BytecodeCompiler.compile(this, isDegOrRad);
+            if (compiled != null) {
+                formula = compiled;
+            }
+            tier = FINAL_TIER;
+        }
+    }
+}
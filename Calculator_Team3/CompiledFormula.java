@@ -0,0 +1,62 @@
+package Calculator_Team3;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * An expression compiled into a reusable function of its variables.
+ * The parameters are the variables of the expression in order of first use;
+ * {@link #applyAsDouble(double)} binds the first one and
+ * {@link #applyAsDouble(double, double)} the first two.
+ * A math error (division by zero, square root of a negative number, ...) yields NaN.
+ */
+public abstract class CompiledFormula implements DoubleUnaryOperator, DoubleBinaryOperator {
+    private String parameters[] = new String[0];
+
+    CompiledFormula() {
+    }
+
+    /**
+     * Sets the parameter names, called once right after the formula is created.
+     * @param parameters the variable names in order of first use
+     */
+    void setParameters(String[] parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * Gets the names of the variables bound by the applyAsDouble methods.
+     * @return the variable names in order of first use
+     */
+    public String[] getParameters() {
+        return parameters.clone();
+    }
+
+    /**
+     * Evaluates the formula reading every variable from an array, in the order of
+     * {@link #getParameters()}.
+     * @param variables the variable values
+     * @return the result, or NaN for a math error
+     */
+    public abstract double evaluate(double[] variables);
+
+    /**
+     * Evaluates the formula with the first two parameters bound to the arguments.
+     * Further parameters read as NaN.
+     * @param x the value of the first parameter
+     * @param y the value of the second parameter
+     * @return the result, or NaN for a math error
+     */
+    @Override
+    public abstract double applyAsDouble(double x, double y);
+
+    /**
+     * Evaluates the formula with the first parameter bound to the argument.
+     * @param x the value of the first parameter
+     * @return the result, or NaN for a math error
+     */
+    @Override
+    public double applyAsDouble(double x) {
+        return applyAsDouble(x, Double.NaN);
+    }
+}
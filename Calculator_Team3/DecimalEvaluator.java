@@ -0,0 +1,369 @@
+package Calculator_Team3;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+/**
+ * Evaluates compiled expressions in decimal arithmetic, for results such as
+ * {@code 0.1 + 0.2 = 0.3} that binary doubles cannot represent.
+ * Most expressions typed into a calculator have an exact double result, so the postfix
+ * tokens are first run in double arithmetic, checking that no literal and no operation
+ * rounds; only if one does, they are run again with {@link BigDecimal} numbers rounded
+ * to a {@link MathContext}. The check costs a few floating-point operations per token:
+ * a sum is exact if its error term is zero, a product or quotient if a fused multiply-add
+ * gives back the operands, and a square root if its square does.
+ * Expressions are evaluated as they were parsed, since the optimizer folds constants
+ * into doubles. Variables keep double values, read as the shortest decimal that
+ * converts to them.
+ */
+final class DecimalEvaluator {
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+    private static final BigInteger MAX_SHIFT = BigInteger.valueOf(1 << 20);
+    private static final double EXACT_INTEGER = 0x1p53; // Every integer below is a double
+
+    private DecimalEvaluator() {
+    }
+
+    /**
+     * Evaluates a compiled expression in decimal arithmetic, reporting math errors in the context.
+     * @param expression the compiled expression, which must be valid
+     * @param mc the precision and rounding of the result
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @param context the variables and the error state of the evaluation
+     * @return the result, or null if an error occurred or the expression calls user
+     *         functions, which only evaluate in double arithmetic
+     */
+    static BigDecimal evaluate(CompiledExpression expression, MathContext mc, boolean isDegOrRad,
+            EvaluationContext context) {
+        expression = expression.getOriginal();
+        if (context.meter != null) {
+            context.meter.charge(expression.getPostfix().length);
+        }
+        double exact = exactDouble(expression, context);
+        if (!Double.isNaN(exact)) {
+            return new BigDecimal(exact).round(mc);
+        }
+        return evaluateDecimal(expression, mc, isDegOrRad, context);
+    }
+
+    /**
+     * Runs the postfix tokens in double arithmetic as long as every step is exact.
+     * @param expression the compiled expression as it was parsed
+     * @param context the variables and the operand stack of the evaluation
+     * @return the exact result, or NaN if a step would round, raise an error or store a value
+     */
+    static double exactDouble(CompiledExpression expression, EvaluationContext context) {
+        if (!expression.hasBinaryLiterals()) {
+            return Double.NaN;
+        }
+        if (context.stack.length < expression.getMaxDepth()) {
+            context.stack = new double[expression.getMaxDepth()];
+        }
+        context.bind(expression);
+        double S[] = context.stack;
+        int top = 0;
+        for (Token t : expression.getPostfix()) {
+            if (t.kind == Token.LITERAL && t.valid) {
+                S[top++] = t.value;
+                continue;
+            }
+            if (t.kind == Token.VARIABLE) {
+                double value = context.variables[t.slot];
+                if (!context.isDefined(t.slot) || !isDecimal(value)) {
+                    return Double.NaN;
+                }
+                S[top++] = value;
+                continue;
+            }
+            if (t.kind != Token.OPERATOR) {
+                return Double.NaN; // Constants have no exact double
+            }
+            double a = S[--top];
+            double b = t.arity == 2 ? S[--top] : 0.0;
+            double num;
+            switch (t.op) {
+            case NEGATE:
+                num = -a;
+                break;
+            case ADD:
+            case SUBTRACT:
+                if (t.op == Operator.SUBTRACT) {
+                    a = -a;
+                }
+                num = b + a;
+                // TwoSum: the rounding error of the sum, which is zero only if it is exact
+                double c = num - b;
+                if ((b - (num - c)) + (a - c) != 0) {
+                    return Double.NaN;
+                }
+                break;
+            case MULTIPLY:
+            case SQUARE:
+                if (t.op == Operator.SQUARE) {
+                    b = a;
+                }
+                num = b * a;
+                if (Math.fma(b, a, -num) != 0) {
+                    return Double.NaN;
+                }
+                break;
+            case DIVIDE:
+            case PERCENT:
+            case RECIPROCAL:
+                if (t.op == Operator.PERCENT) {
+                    b = a;
+                    a = 100;
+                } else if (t.op == Operator.RECIPROCAL) {
+                    b = 1;
+                }
+                if (a == 0) {
+                    return Double.NaN;
+                }
+                num = b / a;
+                if (Math.fma(num, a, -b) != 0) {
+                    return Double.NaN;
+                }
+                break;
+            case SQRT:
+                if (!(a >= 0)) {
+                    return Double.NaN;
+                }
+                num = Math.sqrt(a);
+                if (Math.fma(num, num, -a) != 0) {
+                    return Double.NaN;
+                }
+                break;
+            case POWER:
+                num = exactPower(b, a);
+                break;
+            default:
+                return Double.NaN; // Transcendental, integer and storing operators take the decimal path
+            }
+            if (!Double.isFinite(num)) {
+                return Double.NaN;
+            }
+            S[top++] = num;
+        }
+        return S[top - 1];
+    }
+
+    // Raises to a small non-negative integer power by exact multiplications, or gives NaN
+    private static double exactPower(double x, double n) {
+        if (!(n >= 0 && n <= 64 && n == Math.rint(n))) {
+            return Double.NaN;
+        }
+        double result = 1;
+        for (int i = 0; i < (int) n; i++) {
+            double product = result * x;
+            if (Math.fma(result, x, -product) != 0) {
+                return Double.NaN;
+            }
+            result = product;
+        }
+        return result;
+    }
+
+    // Checks if a double is exactly the shortest decimal that converts to it, as 0.5 but not 0.1
+    private static boolean isDecimal(double value) {
+        if (Math.abs(value) < EXACT_INTEGER && value == Math.rint(value)) {
+            return true;
+        }
+        return Double.isFinite(value) && BigDecimal.valueOf(value).compareTo(new BigDecimal(value)) == 0;
+    }
+
+    /**
+     * Runs the postfix tokens in decimal arithmetic, with the error messages of the interpreter.
+     * @param expression the compiled expression as it was parsed
+     * @param mc the precision and rounding of every operation
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @param context the variables and the error state of the evaluation
+     * @return the result, or null if an error occurred or the expression calls a user function
+     */
+    static BigDecimal evaluateDecimal(CompiledExpression expression, MathContext mc, boolean isDegOrRad,
+            EvaluationContext context) {
+        Token[] postfix = expression.getPostfix();
+        BigDecimal decimals[] = expression.getDecimals();
+        BigDecimal S[] = new BigDecimal[expression.getMaxDepth()];
+        int top = 0;
+        // Constants get more digits, so that ln(e) is 1 once rounded
+        MathContext constants = new MathContext(mc.getPrecision() + 10);
+        context.bind(expression);
+        try {
+            for (int i = 0; i < postfix.length; i++) {
+                Token t = postfix[i];
+                boolean isStoreTarget = i + 1 < postfix.length && postfix[i + 1].is(Operator.STORE);
+                if (t.kind == Token.VARIABLE) {
+                    double value = context.variables[t.slot];
+                    if (!isStoreTarget && !context.isDefined(t.slot)) {
+                        return error(context, "undefined variable " + t.text);
+                    }
+                    if (!Double.isFinite(value)) {
+                        // NaN for a store target; otherwise left for double arithmetic, which handles infinity
+                        S[top++] = BigDecimal.ZERO;
+                        if (isStoreTarget) {
+                            continue;
+                        }
+                        return null;
+                    }
+                    S[top++] = BigDecimal.valueOf(value);
+                    continue;
+                }
+                if (t.kind == Token.CONSTANT) {
+                    S[top++] = t.text.equals("e") ? BigMath.e(constants) : BigMath.pi(constants);
+                    continue;
+                }
+                if (t.kind != Token.OPERATOR) {
+                    if (decimals[i] == null) {
+                        return error(context, "number " + t.text + " in radix = " + context.getRadix());
+                    }
+                    S[top++] = decimals[i];
+                    continue;
+                }
+                if (t.is(Operator.CALL)) {
+                    return null;
+                }
+                BigMath.checkpoint(mc);
+                BigDecimal a = S[--top];
+                BigDecimal b = t.arity == 2 ? S[--top] : null;
+                BigDecimal num;
+                switch (t.op) {
+                case NEGATE:
+                    num = a.negate(mc);
+                    break;
+                case SIN:
+                    num = BigMath.sin(a, isDegOrRad, mc);
+                    break;
+                case COS:
+                    num = BigMath.cos(a, isDegOrRad, mc);
+                    break;
+                case TAN:
+                    num = BigMath.tan(a, isDegOrRad, mc);
+                    break;
+                case LOG:
+                    num = BigMath.log10(a, mc);
+                    break;
+                case LN:
+                    num = BigMath.ln(a, mc);
+                    break;
+                case RECIPROCAL:
+                    if (a.signum() == 0) {
+                        return error(context, "division by zero");
+                    }
+                    num = BigDecimal.ONE.divide(a, mc);
+                    break;
+                case PERCENT:
+                    num = a.divide(HUNDRED).round(mc);
+                    break;
+                case DEGREE:
+                    num = BigMath.radians(a, mc);
+                    break;
+                case SQUARE:
+                    num = a.multiply(a, mc);
+                    break;
+                case SQRT:
+                    if (a.signum() < 0) {
+                        return error(context, "sqrt of a negative number");
+                    }
+                    num = a.sqrt(mc);
+                    break;
+                case NOT:
+                    if (!BigMath.isInteger(a) || a.signum() < 0) {
+                        return error(context, t.text + " needs a non-negative integer");
+                    }
+                    num = new BigDecimal(a.toBigInteger().not(), mc);
+                    break;
+                case FACTORIAL:
+                    if (!BigMath.isInteger(a)) {
+                        return null; // The gamma function, only in double arithmetic
+                    }
+                    if (a.signum() < 0) {
+                        return error(context, t.text + " is undefined for negative integers");
+                    }
+                    num = BigMath.factorial(a, mc);
+                    break;
+                case STORE:
+                    if (i > 0 && postfix[i - 1].kind == Token.VARIABLE) {
+                        if (!context.store(postfix[i - 1].slot, b.doubleValue())) {
+                            return error(context, "too many variables");
+                        }
+                        return b.round(mc);
+                    }
+                    return error(context, "sto needs a variable");
+                case ADD:
+                    num = b.add(a, mc);
+                    break;
+                case SUBTRACT:
+                    num = b.subtract(a, mc);
+                    break;
+                case MULTIPLY:
+                    num = b.multiply(a, mc);
+                    break;
+                case DIVIDE:
+                    if (a.signum() == 0) {
+                        return error(context, "division by zero");
+                    }
+                    num = b.divide(a, mc);
+                    break;
+                case POWER:
+                    num = BigMath.pow(b, a, mc);
+                    break;
+                case AND:
+                case OR:
+                case XOR:
+                case MOD:
+                case SHIFT_LEFT:
+                case SHIFT_RIGHT:
+                    if (!BigMath.isInteger(a) || !BigMath.isInteger(b) || (t.op == Operator.MOD && a.signum() == 0)) {
+                        return error(context, t.text + " needs integers");
+                    }
+                    num = new BigDecimal(integer(t.op, b.toBigInteger(), a.toBigInteger()), mc);
+                    break;
+                default:
+                    return error(context, "unexpected " + t.text);
+                }
+                if (Trace.STEPS) {
+                    Trace.step("evaluateDecimal", t.text + " -> " + num);
+                }
+                S[top++] = num;
+            }
+        } catch (ArithmeticException e) {
+            return error(context, e.getMessage());
+        }
+        return S[top - 1].round(mc);
+    }
+
+    // Applies an integer operator like the interpreter does to longs, without overflow
+    private static BigInteger integer(Operator op, BigInteger a, BigInteger b) {
+        switch (op) {
+        case AND:
+            return a.and(b);
+        case OR:
+            return a.or(b);
+        case XOR:
+            return a.xor(b);
+        case MOD:
+            return a.remainder(b);
+        default:
+            // A negative count shifts the other way
+            boolean isLeft = (op == Operator.SHIFT_LEFT) == (b.signum() >= 0);
+            if (b.abs().compareTo(MAX_SHIFT) > 0) {
+                if (isLeft && a.signum() != 0) {
+                    throw new ArithmeticException("overflow"); // The result would not fit in memory
+                }
+                return a.signum() < 0 ? BigInteger.ONE.negate() : BigInteger.ZERO; // Only the sign is left
+            }
+            int count = b.abs().intValue();
+            return isLeft ? a.shiftLeft(count) : a.shiftRight(count);
+        }
+    }
+
+    // Reports a math error in the context
+    private static BigDecimal error(EvaluationContext context, String message) {
+        context.setError(message);
+        if (Trace.ERRORS) {
+            Trace.error("evaluateDecimal", message);
+        }
+        return null;
+    }
+}
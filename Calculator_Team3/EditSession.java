@@ -0,0 +1,112 @@
+package Calculator_Team3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The state kept between compilations of an expression that is being edited, so that
+ * {@link CalculatorEngine#compile(EditSession, String, EvaluationContext)} only lexes and parses
+ * what changed. It holds the tokens of the previous text and, before every token of the
+ * standardized infix expression, the state of the Shunting-yard parser: the length of its
+ * output and its operator stack. Stack frames are never changed once pushed, so keeping
+ * the state before every token costs one reference and one int per token.
+ * A session belongs to one editor and is not thread-safe.
+ */
+final class EditSession {
+    String source = ""; // The previous text, normalized
+    Token tokens[] = new Token[0]; // The tokens of the previous text, before calls are marked
+    private int radix;
+    private List<Token> infix = new ArrayList<Token>();
+    private final List<Token> output = new ArrayList<Token>();
+    private int outputSizes[] = new int[8];
+    private Frame stacks[] = new Frame[8];
+    private int checkpoints = 1; // Number of valid parser states; the one before the first token is empty
+
+    /**
+     * A frame of the operator stack of the parser, holding the operator on top and the
+     * frames below it.
+     */
+    static final class Frame {
+        final Token token;
+        final Frame below;
+
+        Frame(Token token, Frame below) {
+            this.token = token;
+            this.below = below;
+        }
+    }
+
+    /**
+     * Forgets the previous text when the tokens it was lexed into are no longer valid.
+     * Words that became calls are found by {@link #resume(List)}, since call tokens are
+     * marked again on every text.
+     * @param radix the radix of the next text
+     */
+    void prepare(int radix) {
+        if (radix != this.radix) {
+            this.radix = radix;
+            source = "";
+            tokens = new Token[0];
+            infix = new ArrayList<Token>();
+            checkpoints = 1;
+        }
+    }
+
+    /**
+     * Finds where the parser can resume on new infix tokens, and makes them the current ones.
+     * @param next the standardized infix tokens of the new text
+     * @return the index of the first token to parse; the state before it is kept
+     */
+    int resume(List<Token> next) {
+        int n = Math.min(Math.min(infix.size(), next.size()), checkpoints - 1);
+        int from = 0;
+        while (from < n && same(infix.get(from), next.get(from))) {
+            from++;
+        }
+        infix = next;
+        checkpoints = from + 1;
+        return from;
+    }
+
+    /**
+     * Gets the output of the parser, cut back to its length before a token.
+     * @param index the index of the token
+     * @return the output list, which the parser continues
+     */
+    List<Token> output(int index) {
+        output.subList(outputSizes[index], output.size()).clear();
+        return output;
+    }
+
+    /**
+     * Gets the operator stack of the parser before a token.
+     * @param index the index of the token
+     * @return the top frame, or null for an empty stack
+     */
+    Frame stack(int index) {
+        return stacks[index];
+    }
+
+    /**
+     * Records the state of the parser before a token.
+     * @param index the index of the token
+     * @param outputSize the length of the output before the token
+     * @param stack the operator stack before the token
+     */
+    void checkpoint(int index, int outputSize, Frame stack) {
+        if (index >= outputSizes.length) {
+            outputSizes = Arrays.copyOf(outputSizes, Math.max(index + 1, outputSizes.length * 2));
+            stacks = Arrays.copyOf(stacks, outputSizes.length);
+        }
+        outputSizes[index] = outputSize;
+        stacks[index] = stack;
+        checkpoints = index + 1;
+    }
+
+    // Tokens created again by standardization or call marking are equal but not the same
+    private static boolean same(Token a, Token b) {
+        return a == b || a.kind == Token.OPERATOR && b.kind == Token.OPERATOR && a.op == b.op
+                && a.offset == b.offset && a.arity == b.arity && a.slot == b.slot && a.text.equals(b.text);
+    }
+}
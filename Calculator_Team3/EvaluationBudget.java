@@ -0,0 +1,121 @@
+package Calculator_Team3;
+
+/**
+ * Limits on the resources one evaluation may use, so that a single bad input cannot keep
+ * a worker busy: the number of tokens of the expression, the nesting depth of its
+ * parentheses, the number of operations and the wall-clock time. A budget is set on an
+ * {@link EvaluationContext} and applies to every evaluation in it; the tokenizer, the parser,
+ * the evaluator and prime factorization check it cooperatively and throw a
+ * {@link BudgetExceededException} naming the limit that was exceeded.
+ * Operations are counted per token evaluated and per iteration of long loops such as
+ * prime factorization and the prime sieve of exact factorials, which are checked every
+ * {@code 2^20} iterations. In decimal arithmetic, every operator and every term of the series
+ * of an elementary function is checked, and costs an operation per 16 digits of precision.
+ */
+public final class EvaluationBudget {
+    /**
+     * The limits an evaluation can exceed.
+     */
+    public enum Limit {
+        TOKENS("more than %d tokens"),
+        DEPTH("nesting deeper than %d"),
+        OPERATIONS("more than %d operations"),
+        TIME("longer than %d ms");
+
+        private final String format;
+
+        Limit(String format) {
+            this.format = format;
+        }
+
+        /**
+         * Describes the limit being exceeded.
+         * @param value the value of the limit
+         * @return the description
+         */
+        String describe(long value) {
+            return String.format(format, value);
+        }
+    }
+
+    /**
+     * The budget without limits, which contexts start with.
+     */
+    public static final EvaluationBudget UNLIMITED = new EvaluationBudget(0, 0, 0, 0);
+
+    private final int maxTokens;
+    private final int maxDepth;
+    private final long maxOperations;
+    private final long timeoutMillis;
+
+    /**
+     * Creates a budget; 0 means no limit.
+     * @param maxTokens the most tokens an expression may have
+     * @param maxDepth the deepest nesting of parentheses allowed
+     * @param maxOperations the most operations an evaluation may run
+     * @param timeoutMillis the longest time an evaluation may take, in milliseconds
+     * @throws IllegalArgumentException if a limit is negative
+     */
+    public EvaluationBudget(int maxTokens, int maxDepth, long maxOperations, long timeoutMillis) {
+        if (maxTokens < 0 || maxDepth < 0 || maxOperations < 0 || timeoutMillis < 0) {
+            throw new IllegalArgumentException("budget limits cannot be negative");
+        }
+        this.maxTokens = maxTokens;
+        this.maxDepth = maxDepth;
+        this.maxOperations = maxOperations;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Creates the budget configured by the system properties {@code calculator.budget.tokens},
+     * {@code calculator.budget.depth}, {@code calculator.budget.operations} and
+     * {@code calculator.budget.timeoutMillis}, for the services taking input from users.
+     * @return the configured budget, unlimited where no property is set
+     */
+    public static EvaluationBudget fromProperties() {
+        return new EvaluationBudget(Integer.getInteger("calculator.budget.tokens", 0),
+                Integer.getInteger("calculator.budget.depth", 0),
+                Long.getLong("calculator.budget.operations", 0),
+                Long.getLong("calculator.budget.timeoutMillis", 0));
+    }
+
+    /**
+     * Gets the most tokens an expression may have.
+     * @return the limit, 0 for none
+     */
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    /**
+     * Gets the deepest nesting of parentheses allowed.
+     * @return the limit, 0 for none
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Gets the most operations an evaluation may run.
+     * @return the limit, 0 for none
+     */
+    public long getMaxOperations() {
+        return maxOperations;
+    }
+
+    /**
+     * Gets the longest time an evaluation may take.
+     * @return the limit in milliseconds, 0 for none
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Checks if the budget limits nothing.
+     * @return true if every limit is 0
+     */
+    public boolean isUnlimited() {
+        return maxTokens == 0 && maxDepth == 0 && maxOperations == 0 && timeoutMillis == 0;
+    }
+}
@@ -0,0 +1,315 @@
+package Calculator_Team3;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The per-calculation state used by a {@link CalculatorEngine}: the radix, the angle mode,
+ * the variable values and the error of the last evaluation, plus a reusable operand stack.
+ * A context is cheap to create but not thread-safe; each thread evaluating expressions
+ * uses its own context while sharing the engine.
+ * Variables are defined by storing into them, as in {@code 5→x}; ans is always defined.
+ * Each context has its own {@link SymbolTable} of names, holding at most
+ * {@link #MAX_VARIABLES}, and keeps their values in an array indexed by its slots.
+ * User functions, defined as in
+ * {@code f(x) = x² + 1}, belong to the context alone, names included: a word followed
+ * by "(" is a call only in the contexts that define a function of that name.
+ */
+public class EvaluationContext {
+    // Bound the variables and functions of a context, whose names may come from untrusted input
+    static final int MAX_VARIABLES = 1 << 10;
+    static final int MAX_FUNCTIONS = 1 << 10;
+
+    private int radix;
+    private boolean isDegOrRad;
+    private String error;
+    private EvaluationBudget budget = EvaluationBudget.UNLIMITED;
+    BudgetMeter meter; // Tracks the budget of the running evaluation, null without a budget
+    private SymbolTable symbols = new SymbolTable(MAX_VARIABLES, "ans");
+    private double values[] = { 0 }; // By slot of the symbol table
+    // The variables of the bound expression, by the slots of the expression: the values of
+    // this context, or NaN for the ones it has not defined, so compiled formulas reading
+    // them yield NaN and fall back to the interpreter, which reports the error
+    double variables[] = new double[4];
+    private int binding[] = new int[4]; // The slot in this context of each variable, -1 if undefined
+    private CompiledExpression bound;
+    private final Map<String, UserFunction> functions = new HashMap<String, UserFunction>();
+    private boolean hasDefinitions; // True once a variable other than ans or a function is defined
+    double stack[] = new double[16]; // Operand stack reused by every evaluation
+
+    /**
+     * Creates a context for decimal numbers and angles in degrees.
+     */
+    public EvaluationContext() {
+        this(10, true);
+    }
+
+    /**
+     * Creates a context with the given settings, ans set to 0 and no other variable.
+     * @param radix the radix of the numbers (2, 8, 10 or 16)
+     * @param isDegOrRad true for degrees, false for radians
+     */
+    public EvaluationContext(int radix, boolean isDegOrRad) {
+        this.radix = radix;
+        this.isDegOrRad = isDegOrRad;
+    }
+
+    /**
+     * Gets the radix of the numbers.
+     * @return the radix (2, 8, 10 or 16)
+     */
+    public int getRadix() {
+        return radix;
+    }
+
+    /**
+     * Sets the radix of the numbers.
+     * @param radix the radix (2, 8, 10 or 16)
+     */
+    public void setRadix(int radix) {
+        this.radix = radix;
+    }
+
+    /**
+     * Gets the limits of every evaluation in this context.
+     * @return the budget, {@link EvaluationBudget#UNLIMITED} by default
+     */
+    public EvaluationBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the limits of every evaluation in this context.
+     * @param budget the budget
+     */
+    public void setBudget(EvaluationBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Checks if angle mode is set to degrees or radians.
+     * @return true if degrees, false if radians
+     */
+    public boolean isDegOrRad() {
+        return isDegOrRad;
+    }
+
+    /**
+     * Sets the angle mode (degrees or radians).
+     * @param isDegOrRad true for degrees, false for radians
+     */
+    public void setDegOrRad(boolean isDegOrRad) {
+        this.isDegOrRad = isDegOrRad;
+    }
+
+    /**
+     * Gets the value of the ans variable.
+     * @return the last stored answer
+     */
+    public double getAns() {
+        return values[SymbolTable.ANS];
+    }
+
+    /**
+     * Sets the value of the ans variable.
+     * @param ans the answer to store
+     */
+    public void setAns(double ans) {
+        values[SymbolTable.ANS] = ans;
+    }
+
+    /**
+     * Checks if a variable was given a value in this context.
+     * @param name the variable name
+     * @return true if the variable is defined
+     */
+    public boolean isDefined(String name) {
+        return symbols.slot(name.toLowerCase()) >= 0;
+    }
+
+    /**
+     * Gets the value of a variable.
+     * @param name the variable name
+     * @return the value, or NaN if the variable is not defined
+     */
+    public double getVariable(String name) {
+        int slot = symbols.slot(name.toLowerCase());
+        return slot >= 0 ? values[slot] : Double.NaN;
+    }
+
+    /**
+     * Defines a variable or changes its value, like storing into it with {@code →}.
+     * @param name the variable name: a letter followed by letters or underscores,
+     *        that is not a constant or a function
+     * @param value the value to store
+     * @throws IllegalArgumentException if the name is not valid or the context already has
+     *         {@link #MAX_VARIABLES} variables
+     */
+    public void setVariable(String name, double value) {
+        name = name.toLowerCase();
+        if (!name.equals("ans") && !CalculatorEngine.isVariableName(name)) {
+            throw new IllegalArgumentException("cannot define variable " + name);
+        }
+        int slot = define(name);
+        if (slot < 0) {
+            throw new IllegalArgumentException("too many variables");
+        }
+        values[slot] = value;
+    }
+
+    // Gets the slot of a variable, defining it if needed; -1 if the context has too many
+    private int define(String name) {
+        int slot = symbols.define(name);
+        if (slot < 0) {
+            return -1;
+        }
+        if (slot >= values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        if (slot != SymbolTable.ANS) {
+            hasDefinitions = true;
+            bound = null; // The binding of the bound expression may have a new slot to read
+        }
+        return slot;
+    }
+
+    /**
+     * Binds the variables of an expression to the variables of this context, for an evaluation.
+     * The values are read into {@link #variables}, by the slots of the expression; binding the
+     * expression bound last only reads the values again, so it allocates nothing.
+     * @param expression the compiled expression to evaluate
+     */
+    void bind(CompiledExpression expression) {
+        int count = expression.getSlotCount();
+        if (expression != bound) {
+            if (binding.length < count) {
+                binding = new int[Math.max(count, binding.length * 2)];
+                variables = new double[binding.length];
+            }
+            for (int i = 0; i < count; i++) {
+                String name = expression.getVariableName(i);
+                binding[i] = name != null ? symbols.slot(name) : -1;
+            }
+            bound = expression;
+        }
+        for (int i = 0; i < count; i++) {
+            variables[i] = binding[i] >= 0 ? values[binding[i]] : Double.NaN;
+        }
+    }
+
+    /**
+     * Checks if a variable of the bound expression was given a value in this context.
+     * @param slot the slot of the variable in the expression
+     * @return true if the variable is defined
+     */
+    boolean isDefined(int slot) {
+        return binding[slot] >= 0;
+    }
+
+    /**
+     * Stores a value into a variable of the bound expression, defining it if needed.
+     * @param slot the slot of the variable in the expression
+     * @param value the value to store
+     * @return false if the variable is new and the context already has {@link #MAX_VARIABLES}
+     */
+    boolean store(int slot, double value) {
+        if (binding[slot] < 0) {
+            CompiledExpression expression = bound;
+            int index = define(bound.getVariableName(slot));
+            if (index < 0) {
+                return false;
+            }
+            bound = expression; // The other variables of the expression keep their binding
+            binding[slot] = index;
+        }
+        values[binding[slot]] = value;
+        variables[slot] = value;
+        return true;
+    }
+
+    /**
+     * Copies the settings, the budget, the variables and the functions of this context,
+     * without its error and operand stack.
+     * @return the copy, whose functions are copies that do not share state with these
+     */
+    EvaluationContext copy() {
+        EvaluationContext copy = new EvaluationContext(radix, isDegOrRad);
+        copy.budget = budget;
+        copy.symbols = symbols.copy();
+        copy.values = values.clone();
+        copy.hasDefinitions = hasDefinitions;
+        Map<UserFunction, UserFunction> copies = new HashMap<UserFunction, UserFunction>();
+        for (UserFunction function : functions.values()) {
+            copy.functions.put(function.getName(), function.copy(copies));
+        }
+        return copy;
+    }
+
+    /**
+     * Forgets the variables and functions defined by earlier evaluations, so that the
+     * context can be reused for an unrelated expression. The settings are kept.
+     * @param ans the value of ans to start from
+     */
+    void reset(double ans) {
+        if (hasDefinitions) {
+            symbols = new SymbolTable(MAX_VARIABLES, "ans");
+            functions.clear();
+            hasDefinitions = false;
+            bound = null;
+        }
+        values[SymbolTable.ANS] = ans;
+        error = null;
+    }
+
+    /**
+     * Gets a user function defined in this context.
+     * @param name the function name
+     * @return the function, or null if it is not defined
+     */
+    public UserFunction getFunction(String name) {
+        return findFunction(name.toLowerCase());
+    }
+
+    UserFunction findFunction(String name) {
+        return functions.get(name);
+    }
+
+    /**
+     * Defines a user function or replaces its definition.
+     * @param function the function, defined under its name
+     * @return false if the context already has {@link #MAX_FUNCTIONS} other functions
+     */
+    boolean defineFunction(UserFunction function) {
+        if (functions.size() >= MAX_FUNCTIONS && !functions.containsKey(function.getName())) {
+            return false;
+        }
+        functions.put(function.getName(), function);
+        hasDefinitions = true;
+        return true;
+    }
+
+    /**
+     * Checks if the last evaluation with this context failed.
+     * @return true if a math error occurred
+     */
+    public boolean isError() {
+        return error != null;
+    }
+
+    /**
+     * Gets the description of the error of the last evaluation.
+     * @return the error message, or null if the evaluation succeeded
+     */
+    public String getError() {
+        return error;
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+
+    void clearError() {
+        error = null;
+    }
+}
@@ -0,0 +1,196 @@
+package Calculator_Team3;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, approximately least-recently-used cache of compiled expressions.
+ * Entries are keyed by the normalized input together with the radix and the
+ * angle mode, because both affect how an input is tokenized and evaluated.
+ * The cache is safe for concurrent use: lookups take no lock, and when the cache
+ * overflows the least recently used eighth of the entries is evicted in one pass.
+ */
+public class ExpressionCache {
+    public static final int DEFAULT_CAPACITY = 512;
+
+    private final int capacity;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+    // Advanced on every insertion; entries record the value at their last use
+    private final AtomicLong clock = new AtomicLong();
+    private final LongAdder hitCount = new LongAdder(), missCount = new LongAdder(),
+            evictionCount = new LongAdder();
+    private final Object evictionLock = new Object();
+
+    /**
+     * Creates a cache holding at most {@link #DEFAULT_CAPACITY} expressions.
+     */
+    public ExpressionCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a cache holding at most the given number of expressions.
+     * @param capacity the maximum number of cached expressions
+     */
+    public ExpressionCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Looks up a compiled expression and records a hit or a miss.
+     * @param source the normalized input
+     * @param radix the radix the input was compiled for
+     * @param isDegOrRad the angle mode the input was compiled for
+     * @return the cached expression, or null if it is not cached
+     */
+    CompiledExpression get(String source, int radix, boolean isDegOrRad) {
+        Entry entry = entries.get(new Key(source, radix, isDegOrRad));
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        long now = clock.get();
+        if (entry.lastUsed != now) { // Avoid writing to entries shared by many threads
+            entry.lastUsed = now;
+        }
+        return entry.expression;
+    }
+
+    /**
+     * Adds a compiled expression, evicting the least recently used ones if the cache is full.
+     * @param radix the radix the expression was compiled for
+     * @param isDegOrRad the angle mode the expression was compiled for
+     * @param expression the compiled expression
+     */
+    void put(int radix, boolean isDegOrRad, CompiledExpression expression) {
+        entries.put(new Key(expression.getSource(), radix, isDegOrRad),
+                new Entry(expression, clock.incrementAndGet()));
+        if (entries.size() > capacity) {
+            evict();
+        }
+    }
+
+    // Removes the least recently used entries until an eighth of the capacity is free
+    private void evict() {
+        synchronized (evictionLock) {
+            int excess = entries.size() - (capacity - capacity / 8);
+            if (excess <= 0) {
+                return;
+            }
+            long times[] = new long[entries.size() + 16];
+            int n = 0;
+            for (Entry entry : entries.values()) {
+                if (n == times.length) {
+                    break;
+                }
+                times[n++] = entry.lastUsed;
+            }
+            Arrays.sort(times, 0, n);
+            long cutoff = times[Math.min(excess, n) - 1];
+            for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+                if (excess > 0 && e.getValue().lastUsed <= cutoff && entries.remove(e.getKey(), e.getValue())) {
+                    evictionCount.increment();
+                    excess--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all cached expressions. Statistics are kept.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Gets the maximum number of cached expressions.
+     * @return the capacity of the cache
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of currently cached expressions.
+     * @return the cache size
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of lookups that found a compiled expression.
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Gets the number of lookups that had to compile the expression.
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Gets the number of expressions dropped to stay within the capacity.
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ExpressionCache[size=" + size() + ", capacity=" + capacity + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    // Cache key: normalized input plus the settings it was compiled under
+    private static final class Key {
+        private final String source;
+        private final int radix;
+        private final boolean isDegOrRad;
+
+        Key(String source, int radix, boolean isDegOrRad) {
+            this.source = source;
+            this.radix = radix;
+            this.isDegOrRad = isDegOrRad;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return radix == k.radix && isDegOrRad == k.isDegOrRad && source.equals(k.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return (source.hashCode() * 31 + radix) * 2 + (isDegOrRad ? 1 : 0);
+        }
+    }
+
+    // A cached expression and the clock value at its last use
+    private static final class Entry {
+        final CompiledExpression expression;
+        volatile long lastUsed;
+
+        Entry(CompiledExpression expression, long lastUsed) {
+            this.expression = expression;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package Calculator_Team3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites the postfix tokens of an expression before it is cached, so the work
+ * is done once per formula instead of on every evaluation.
+ * <ul>
+ * <li>Constant subtrees such as {@code 2*pi} or {@code sin(30°)} are folded into one number.</li>
+ * <li>Identities are removed: {@code x*1}, {@code 1*x}, {@code x-0}, {@code x^1} and {@code ~~x}.</li>
+ * <li>{@code x^2} becomes {@code x²}, which multiplies instead of calling {@link Math#pow}.</li>
+ * </ul>
+ * Every rewrite gives the same result as the original expression, including math errors:
+ * a subtree is only folded if evaluating it raises no error.
+ */
+final class ExpressionOptimizer {
+    private final boolean isDegOrRad;
+    private final boolean simplify;
+    private final List<Token> out;
+    // Start of the output tokens of each operand on the symbolic stack
+    private int starts[];
+    private int top;
+    private boolean changed;
+
+    private ExpressionOptimizer(int size, boolean isDegOrRad, boolean simplify) {
+        this.isDegOrRad = isDegOrRad;
+        this.simplify = simplify;
+        this.out = new ArrayList<Token>(size);
+        this.starts = new int[Math.max(size, 1)];
+    }
+
+    /**
+     * Optimizes a compiled expression.
+     * @param expression the compiled expression
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @return the optimized expression, or the expression itself if nothing changed
+     */
+    static CompiledExpression optimize(CompiledExpression expression, boolean isDegOrRad) {
+        if (!expression.isValid()) {
+            return expression;
+        }
+        Token[] postfix = expression.getPostfix();
+        int store = postfix.length;
+        for (int i = 0; i < postfix.length; i++) {
+            if (postfix[i].is(Operator.STORE)) {
+                store = i;
+                break;
+            }
+        }
+        // A store needs a variable right before it, which removing x*1 could create
+        ExpressionOptimizer optimizer = new ExpressionOptimizer(postfix.length, isDegOrRad, store == postfix.length);
+        for (int i = 0; i < store; i++) {
+            optimizer.add(postfix[i]);
+        }
+        if (!optimizer.changed) {
+            return expression;
+        }
+        // Evaluation stops at the store, so the rest is kept as it is
+        for (int i = store; i < postfix.length; i++) {
+            optimizer.out.add(postfix[i]);
+        }
+        return new CompiledExpression(expression, optimizer.out.toArray(new Token[0]));
+    }
+
+    private void add(Token t) {
+        if (t.kind != Token.OPERATOR) {
+            starts[top++] = out.size();
+            out.add(t);
+        } else if (t.is(Operator.CALL)) {
+            // User functions are defined per context, so calls are never folded
+            top -= t.arity - 1;
+            out.add(t);
+        } else if (t.arity == 2) {
+            top--;
+            binary(t, starts[top - 1], starts[top]);
+        } else {
+            unary(t, starts[top - 1]);
+        }
+    }
+
+    private void unary(Token t, int start) {
+        int end = out.size();
+        if (isNumber(start, end)) {
+            fold(t, start, out.get(start).value, 0);
+        } else if (simplify && t.is(Operator.NEGATE) && out.get(end - 1).is(Operator.NEGATE)) {
+            out.remove(end - 1);
+            changed = true;
+        } else {
+            out.add(t);
+        }
+    }
+
+    private void binary(Token t, int left, int right) {
+        int end = out.size();
+        if (isNumber(left, right) && isNumber(right, end)) {
+            fold(t, left, out.get(left).value, out.get(right).value);
+            return;
+        }
+        if (!simplify) {
+            out.add(t);
+            return;
+        }
+        if (isNumber(right, end, 1) && (t.is(Operator.MULTIPLY) || t.is(Operator.POWER))
+                || isNumber(right, end, 0) && t.is(Operator.SUBTRACT)) {
+            out.remove(right);
+        } else if (isNumber(left, right, 1) && t.is(Operator.MULTIPLY)) {
+            out.remove(left);
+        } else if (isNumber(right, end, 2) && t.is(Operator.POWER)) {
+            out.set(right, Token.operator(Operator.SQUARE, t.offset));
+        } else {
+            out.add(t);
+            return;
+        }
+        changed = true;
+    }
+
+    // Replaces the operands from start on with the result, unless evaluating it is an error
+    private void fold(Token t, int start, double a, double b) {
+        double value = MathFunctions.apply(t.op, a, b, isDegOrRad);
+        if (Double.isNaN(value)) {
+            out.add(t);
+            return;
+        }
+        Token first = out.get(start);
+        out.subList(start, out.size()).clear();
+        changed = true;
+        out.add(Token.number(Token.LITERAL, String.valueOf(value), value, true, first.offset));
+    }
+
+    // Checks if the operand between the indexes is a single valid number
+    private boolean isNumber(int start, int end) {
+        Token t = out.get(start);
+        return end - start == 1 && t.kind <= Token.CONSTANT && t.valid;
+    }
+
+    // Compares including the sign of zero, since x-(-0) is not always x
+    private boolean isNumber(int start, int end, double value) {
+        return isNumber(start, end) && Double.compare(out.get(start).value, value) == 0;
+    }
+}
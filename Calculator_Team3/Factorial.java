@@ -0,0 +1,197 @@
+package Calculator_Team3;
+
+import java.math.BigInteger;
+
+/**
+ * The factorial function, exact for integers and extended to other numbers by the gamma
+ * function: {@code x! = Γ(x + 1)}.
+ * Exact factorials use Luschny's prime swing algorithm: {@code n! = (⌊n/2⌋!)² · n≀}, where the
+ * swing {@code n≀ = n! / (⌊n/2⌋!)²} is the product of the primes up to n, each raised to an
+ * exponent read from the digits of n in its base. The powers of two are shifted in at the end.
+ * The result is built from a few large balanced products that {@link BigInteger} multiplies
+ * with its fast algorithms, so 100000! takes about a tenth of a second where multiplying
+ * 1, 2, ..., n in turn takes seconds. The factorials up to 170!, the largest that is a finite double,
+ * are kept both exact and as doubles.
+ */
+final class Factorial {
+    // The largest n such that n! is a finite double
+    static final int MAX_DOUBLE = 170;
+    private static final BigInteger EXACT[] = new BigInteger[MAX_DOUBLE + 1];
+    private static final double DOUBLES[] = new double[MAX_DOUBLE + 1];
+
+    // Lanczos approximation with g = 7 and 9 terms, accurate to about 15 digits
+    private static final double LANCZOS_G = 7;
+    private static final double LANCZOS[] = { 0.99999999999980993, 676.5203681218851, -1259.1392167224028,
+            771.32342877765313, -176.61502916214059, 12.507343278686905, -0.13857109526572012,
+            9.9843695780195716e-6, 1.5056327351493116e-7 };
+    private static final double LN_SQRT_TWO_PI = 0.5 * Math.log(2 * Math.PI);
+    private static final double MAX_DIRECT_GAMMA = 140; // Above, t^(x - 1/2) would overflow before Γ(x)
+
+    static {
+        EXACT[0] = BigInteger.ONE;
+        DOUBLES[0] = 1;
+        for (int n = 1; n <= MAX_DOUBLE; n++) {
+            EXACT[n] = EXACT[n - 1].multiply(BigInteger.valueOf(n));
+            DOUBLES[n] = EXACT[n].doubleValue(); // Correctly rounded, unlike a product of doubles
+        }
+    }
+
+    private Factorial() {
+    }
+
+    /**
+     * Computes the factorial of a number in double arithmetic: exact or correctly rounded
+     * for integers up to 170, through the gamma function for other numbers.
+     * @param num the number
+     * @return num!, infinity for integers over 170, or NaN for negative integers and NaN
+     */
+    static double factorial(double num) {
+        if (num == Math.rint(num)) {
+            if (num < 0) {
+                return Double.NaN; // Poles of the gamma function
+            }
+            return num <= MAX_DOUBLE ? DOUBLES[(int) num] : Double.POSITIVE_INFINITY;
+        }
+        return gamma(num + 1);
+    }
+
+    /**
+     * Computes the gamma function, with the reflection formula for arguments below 1/2.
+     * @param x the argument
+     * @return Γ(x), or NaN at the poles 0, -1, -2, ...
+     */
+    static double gamma(double x) {
+        if (x <= 0 && x == Math.rint(x)) {
+            return Double.NaN;
+        }
+        if (x < 0.5) {
+            return Math.PI / (Math.sin(Math.PI * x) * gamma(1 - x));
+        }
+        if (x > MAX_DIRECT_GAMMA) {
+            return Math.exp(logGamma(x));
+        }
+        double t = x + LANCZOS_G - 0.5;
+        return Math.sqrt(2 * Math.PI) * Math.pow(t, x - 0.5) * Math.exp(-t) * lanczosSum(x);
+    }
+
+    /**
+     * Computes the natural logarithm of the absolute value of the gamma function, which
+     * stays finite where Γ(x) overflows.
+     * @param x the argument
+     * @return ln |Γ(x)|, or NaN at the poles 0, -1, -2, ...
+     */
+    static double logGamma(double x) {
+        if (x <= 0 && x == Math.rint(x)) {
+            return Double.NaN;
+        }
+        if (x < 0.5) {
+            return Math.log(Math.PI / Math.abs(Math.sin(Math.PI * x))) - logGamma(1 - x);
+        }
+        double t = x + LANCZOS_G - 0.5;
+        return LN_SQRT_TWO_PI + (x - 0.5) * Math.log(t) - t + Math.log(lanczosSum(x));
+    }
+
+    // The series of the Lanczos approximation for Γ(x)
+    private static double lanczosSum(double x) {
+        double sum = LANCZOS[0];
+        for (int i = 1; i < LANCZOS.length; i++) {
+            sum += LANCZOS[i] / (x - 1 + i);
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the factorial of an integer exactly.
+     * @param n the number, not negative
+     * @return n!
+     * @throws ArithmeticException if n! is too large for a BigInteger
+     */
+    static BigInteger exact(int n) {
+        if (n <= MAX_DOUBLE) {
+            return EXACT[n];
+        }
+        int primes[] = primes(n);
+        // n! has n - (number of one bits of n) factors of two
+        return oddFactorial(n, primes).shiftLeft(n - Integer.bitCount(n));
+    }
+
+    // Computes the odd part of n!, from the odd part of (n/2)!
+    private static BigInteger oddFactorial(int n, int primes[]) {
+        if (n <= MAX_DOUBLE) {
+            BigInteger exact = EXACT[n];
+            return exact.shiftRight(exact.getLowestSetBit());
+        }
+        BigInteger half = oddFactorial(n / 2, primes);
+        MathFunctions.checkpoint(n); // The swing goes through the primes up to n
+        return half.multiply(half).multiply(oddSwing(n, primes));
+    }
+
+    // Computes the odd part of the swing of n: each odd prime p up to n appears with the
+    // exponent given by the number of odd quotients n / p^k
+    private static BigInteger oddSwing(int n, int primes[]) {
+        long factors[] = new long[primes.length];
+        int count = 0;
+        int root = (int) Math.sqrt(n);
+        for (int i = 1; i < primes.length && primes[i] <= n; i++) { // The primes go up to the n of the first call
+            int p = primes[i];
+            if (p <= root) {
+                long power = 1;
+                for (int q = n / p; q > 0; q /= p) {
+                    if ((q & 1) == 1) {
+                        power *= p;
+                    }
+                }
+                if (power > 1) {
+                    factors[count++] = power;
+                }
+            } else if (((n / p) & 1) == 1) {
+                factors[count++] = p; // Above the square root the exponent is the parity of n / p
+            }
+        }
+        return product(factors, 0, count);
+    }
+
+    // Multiplies numbers by balanced halves, so that the large products have operands of similar size
+    private static BigInteger product(long factors[], int from, int to) {
+        if (to - from <= 16) {
+            BigInteger result = BigInteger.ONE;
+            long run = 1;
+            for (int i = from; i < to; i++) {
+                if (run > Long.MAX_VALUE / factors[i]) {
+                    result = result.multiply(BigInteger.valueOf(run));
+                    run = 1;
+                }
+                run *= factors[i];
+            }
+            return result.multiply(BigInteger.valueOf(run));
+        }
+        int middle = (from + to) >>> 1;
+        return product(factors, from, middle).multiply(product(factors, middle, to));
+    }
+
+    // Lists the primes up to n with the sieve of Eratosthenes, over odd numbers only
+    private static int[] primes(int n) {
+        boolean composite[] = new boolean[(n + 1) / 2]; // Index i stands for 2i + 1
+        int count = 1;
+        for (int i = 1; i < composite.length; i++) {
+            if ((i & MathFunctions.CHECK_INTERVAL) == 0) {
+                MathFunctions.checkpoint();
+            }
+            if (!composite[i]) {
+                count++;
+                long p = 2L * i + 1;
+                for (long j = p * p / 2; j < composite.length; j += p) {
+                    composite[(int) j] = true;
+                }
+            }
+        }
+        int primes[] = new int[count];
+        primes[0] = 2;
+        for (int i = 1, k = 1; i < composite.length; i++) {
+            if (!composite[i]) {
+                primes[k++] = 2 * i + 1;
+            }
+        }
+        return primes;
+    }
+}
@@ -1,5 +1,7 @@
 package Calculator_Team3;
 
+import java.math.BigDecimal;
+
 public class FormatValue {
     // Convert the value to a string with the specified format
     protected double stringRadixToDouble(String str, int radix) {
@@ -37,6 +39,11 @@ public class FormatValue {
     protected String doubleToStringRadix(double num, int radix, int countRount) {
         String str = "";
         String radixChar = "0123456789ABCDEF";
+        if (Math.abs(num) >= 0x1p63) {
+            // Beyond the range of a long every double is an integer, whose digits need a BigInteger
+            return Double.isInfinite(num) ? Double.toString(num)
+                    : new BigDecimal(num).toBigInteger().toString(radix).toUpperCase();
+        }
         long intNum = (long) num;
         double floatNum = (num - intNum);
         // Convert the integer part to a string
@@ -113,6 +120,9 @@ public class FormatValue {
                 } else {
                     i += 2;
                 }
+                if (((i >> 1) & MathFunctions.CHECK_INTERVAL) == 0) { // i / 2 counts the odd divisors tried
+                    MathFunctions.checkpoint();
+                }
             }
             // Check if num is a prime number after the loop
             if (num > 1) {
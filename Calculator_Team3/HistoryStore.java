@@ -0,0 +1,64 @@
+package Calculator_Team3;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saves and loads the calculation history as a text file,
+ * one calculation per line in the format {@code expression|result|timestamp}.
+ */
+class HistoryStore {
+    private final String filePath;
+
+    /**
+     * Creates a history store.
+     * @param filePath the path of the history file
+     */
+    HistoryStore(String filePath) {
+        this.filePath = filePath;
+    }
+
+    /**
+     * Writes the history to the file, replacing its contents.
+     * @param historyList the calculations to save, newest first
+     * @throws IOException if the file cannot be written
+     */
+    void save(List<CalculationHistory> historyList) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
+            for (CalculationHistory history : historyList) {
+                writer.write(history.getExpression() + "|" +
+                             history.getResult() + "|" +
+                             history.getTimestamp());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads the history from the file. Malformed lines are skipped.
+     * @return the saved calculations, or an empty list if there is no history file yet
+     * @throws IOException if the file cannot be read
+     */
+    List<CalculationHistory> load() throws IOException {
+        List<CalculationHistory> historyList = new ArrayList<>();
+        if (!new File(filePath).exists()) {
+            return historyList;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\\|", 3);
+                if (parts.length == 3) {
+                    historyList.add(new CalculationHistory(parts[0], parts[1], parts[2]));
+                }
+            }
+        }
+        return historyList;
+    }
+}
@@ -0,0 +1,75 @@
+package Calculator_Team3;
+
+/**
+ * Formula that evaluates the postfix tokens directly. It is used for expressions
+ * the bytecode compiler does not handle, such as stores or unknown words.
+ * Calls of user functions yield NaN, since their definitions belong to an
+ * {@link EvaluationContext}.
+ */
+class InterpretedFormula extends CompiledFormula {
+    private final CompiledExpression expression;
+    private final boolean isDegOrRad;
+
+    /**
+     * Creates an interpreted formula.
+     * @param expression the compiled expression
+     * @param isDegOrRad true if trigonometric functions take degrees
+     */
+    InterpretedFormula(CompiledExpression expression, boolean isDegOrRad) {
+        this.expression = expression;
+        this.isDegOrRad = isDegOrRad;
+        setParameters(expression.getParameterNames());
+    }
+
+    @Override
+    public double evaluate(double[] variables) {
+        return run(variables, Double.NaN, Double.NaN);
+    }
+
+    @Override
+    public double applyAsDouble(double x, double y) {
+        return run(null, x, y);
+    }
+
+    // Reads variables from the array if given, otherwise binds parameters 0 and 1 to x and y
+    private double run(double[] variables, double x, double y) {
+        if (!expression.isValid()) {
+            return Double.NaN;
+        }
+        double stack[] = new double[expression.getMaxDepth()];
+        int top = 0;
+        Token[] postfix = expression.getPostfix();
+        for (int i = 0; i < postfix.length; i++) {
+            Token t = postfix[i];
+            if (t.kind == Token.VARIABLE) {
+                if (variables != null) {
+                    stack[top++] = variables[t.slot];
+                } else {
+                    stack[top++] = t.slot == 0 ? x : t.slot == 1 ? y : Double.NaN; // The slot is the parameter index
+                }
+            } else if (t.kind != Token.OPERATOR) {
+                if (!t.valid) {
+                    return Double.NaN;
+                }
+                stack[top++] = t.value;
+            } else if (t.is(Operator.CALL)) {
+                return Double.NaN;
+            } else if (t.is(Operator.STORE)) {
+                double value = stack[top - 2];
+                if (postfix[i - 1].kind != Token.VARIABLE) {
+                    return Double.NaN;
+                }
+                if (variables != null) {
+                    variables[postfix[i - 1].slot] = value;
+                }
+                return value;
+            } else if (t.op.getArity() == 2) {
+                top--;
+                stack[top - 1] = MathFunctions.apply(t.op, stack[top - 1], stack[top], isDegOrRad);
+            } else {
+                stack[top - 1] = MathFunctions.apply(t.op, stack[top - 1], 0, isDegOrRad);
+            }
+        }
+        return stack[top - 1];
+    }
+}
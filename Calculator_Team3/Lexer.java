@@ -0,0 +1,306 @@
+package Calculator_Team3;
+
+import java.util.Arrays;
+
+/**
+ * Splits a mathematical expression into tokens in a single left-to-right pass.
+ * All operator symbols and keywords are stored in a trie that is built once, so
+ * every character is examined a constant number of times.
+ */
+class Lexer {
+    // Words that name a constant or variable
+    private static final String WORDS[] = { "pi", "π", "ans" };
+
+    private static final Node ROOT = new Node();
+    // Characters the lexer may read past the end of a token, at most the longest keyword
+    private static int lookahead = 1;
+
+    static {
+        for (Operator op : Operator.values()) {
+            if (op == Operator.RECIPROCAL) {
+                continue; // Starts with a digit, recognized together with numbers
+            }
+            for (String symbol : op.getSymbols()) {
+                addKeyword(symbol, op);
+            }
+        }
+        for (String keyword : WORDS) {
+            addKeyword(keyword, null);
+        }
+    }
+
+    /**
+     * Turns the text of an operand (a number or a word) into a token.
+     */
+    interface OperandParser {
+        /**
+         * Creates the token for an operand.
+         * @param text the source text of the operand
+         * @param offset the position of the operand in the source
+         * @return the token
+         */
+        Token parse(String text, int offset);
+    }
+
+    private Lexer() {
+    }
+
+    private static void addKeyword(String keyword, Operator op) {
+        Node node = ROOT;
+        for (int i = 0; i < keyword.length(); i++) {
+            node = node.getOrCreate(keyword.charAt(i));
+        }
+        node.keyword = keyword;
+        node.op = op;
+        lookahead = Math.max(lookahead, keyword.length());
+    }
+
+    /**
+     * Splits an expression into tokens.
+     * @param s the expression (already lower case)
+     * @param radix the radix used to recognize digits (2, 8, 10 or 16)
+     * @param parser creates the tokens for numbers and words
+     * @return the tokens in source order
+     */
+    static Token[] tokenize(String s, int radix, OperandParser parser) {
+        return tokenize(s, radix, parser, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Splits an expression into tokens, giving up as soon as there are too many.
+     * @param s the expression (already lower case)
+     * @param radix the radix used to recognize digits (2, 8, 10 or 16)
+     * @param parser creates the tokens for numbers and words
+     * @param maxTokens the most tokens allowed
+     * @return the tokens in source order
+     * @throws BudgetExceededException if the expression has more than maxTokens tokens
+     */
+    static Token[] tokenize(String s, int radix, OperandParser parser, int maxTokens) {
+        Token tokens[] = new Token[Math.max(4, s.length() / 2)];
+        int count = 0;
+        int len = s.length();
+        int i = 0;
+        while (i < len) {
+            if (Character.isWhitespace(s.charAt(i))) {
+                i++;
+                continue;
+            }
+            if (count == maxTokens) {
+                throw new BudgetExceededException(EvaluationBudget.Limit.TOKENS, maxTokens);
+            }
+            if (count == tokens.length) {
+                tokens = Arrays.copyOf(tokens, count * 2);
+            }
+            Token token = next(s, i, radix, parser);
+            tokens[count++] = token;
+            i += token.text.length();
+        }
+        return Arrays.copyOf(tokens, count);
+    }
+
+    /**
+     * Splits an edited expression into tokens, reusing the tokens of its previous text.
+     * The lexer only looks a few characters past a token, so tokens ending well before
+     * the first changed character are kept as they are. Lexing then resumes until it
+     * reaches a token start in the unchanged end of the text, where the previous tokens
+     * continue, moved by the change in length, without being parsed again.
+     * @param s the expression (already lower case)
+     * @param radix the radix used to recognize digits, the same as for the previous tokens
+     * @param parser creates the tokens for numbers and words
+     * @param previous the previous text of the expression
+     * @param tokens the tokens of the previous text
+     * @return the tokens in source order, the same instances as before where nothing changed
+     */
+    static Token[] retokenize(String s, int radix, OperandParser parser, String previous, Token[] tokens) {
+        int len = s.length(), oldLen = previous.length();
+        int prefix = 0;
+        while (prefix < len && prefix < oldLen && s.charAt(prefix) == previous.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < len - prefix && suffix < oldLen - prefix
+                && s.charAt(len - 1 - suffix) == previous.charAt(oldLen - 1 - suffix)) {
+            suffix++;
+        }
+        // Keep the tokens the lexer read without looking at the change
+        int kept = 0;
+        while (kept < tokens.length && end(tokens[kept]) + lookahead <= prefix) {
+            kept++;
+        }
+        Token result[] = Arrays.copyOf(tokens, Math.max(4, kept + (len - prefix) / 2 + tokens.length - kept));
+        int count = kept;
+        int i = kept > 0 ? end(tokens[kept - 1]) : 0;
+        int shift = len - oldLen, old = kept;
+        while (i < len) {
+            if (Character.isWhitespace(s.charAt(i))) {
+                i++;
+                continue;
+            }
+            if (i >= len - suffix) {
+                // The rest of the text is unchanged: continue with the previous tokens if one started here
+                while (old < tokens.length && tokens[old].offset < i - shift) {
+                    old++;
+                }
+                if (old < tokens.length && tokens[old].offset == i - shift) {
+                    if (count + tokens.length - old > result.length) {
+                        result = Arrays.copyOf(result, count + tokens.length - old);
+                    }
+                    for (; old < tokens.length; old++) {
+                        result[count++] = tokens[old].at(tokens[old].offset + shift);
+                    }
+                    break;
+                }
+            }
+            if (count == result.length) {
+                result = Arrays.copyOf(result, count * 2);
+            }
+            Token token = next(s, i, radix, parser);
+            result[count++] = token;
+            i += token.text.length();
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Recognizes the token starting at a character that is not a space
+    private static Token next(String s, int i, int radix, OperandParser parser) {
+        int len = s.length();
+        char c = s.charAt(i);
+        String token;
+        Operator op = null;
+        int end;
+        if (isNumberChar(c, radix)) {
+            if (c == '1' && i + 1 < len && s.charAt(i + 1) == '/') {
+                // "1/" at the start of a token is the reciprocal function
+                op = Operator.RECIPROCAL;
+                token = op.toString();
+                end = i + 2;
+            } else {
+                // Letters are digits in hexadecimal, so a keyword wins only on a full match
+                Node node = radix == 16 ? matchKeyword(s, i) : null;
+                if (node != null) {
+                    token = node.keyword;
+                    op = node.op;
+                    end = i + token.length();
+                } else {
+                    token = null;
+                    end = i + 1;
+                    while (end < len && isNumberChar(s.charAt(end), radix)
+                            && (radix != 16 || matchKeyword(s, end) == null)) {
+                        end++;
+                    }
+                }
+            }
+        } else {
+            Node node = matchKeyword(s, i);
+            if (node != null) {
+                token = node.keyword;
+                op = node.op;
+                end = i + token.length();
+            } else {
+                token = null;
+                // Unknown word: runs until a digit, an operator or a space
+                end = i + 1;
+                while (end < len && !isNumberChar(s.charAt(end), radix)
+                        && !Character.isWhitespace(s.charAt(end)) && !isSymbol(s.charAt(end))) {
+                    end++;
+                }
+            }
+        }
+        if (token == null) {
+            token = s.substring(i, end);
+        }
+        return op != null ? Token.operator(op, token, i) : parser.parse(token, i);
+    }
+
+    // The position after the last character of a token
+    private static int end(Token token) {
+        return token.offset + token.text.length();
+    }
+
+    /**
+     * Checks if a character is a valid digit (or the decimal point) in a radix.
+     * @param c the character to check
+     * @param radix the radix (2, 8, 10 or 16)
+     * @return true if the character can be part of a number
+     */
+    static boolean isNumberChar(char c, int radix) {
+        if (c == '.') {
+            return true;
+        }
+        if (c < '0' || c > 'f') {
+            return false;
+        }
+        return Character.digit(c, radix) >= 0 && (c <= '9' || c >= 'a');
+    }
+
+    // Checks if a single character is an operator on its own
+    private static boolean isSymbol(char c) {
+        Node node = ROOT.get(c);
+        return node != null && node.keyword != null;
+    }
+
+    /**
+     * Finds the shortest keyword starting at a position.
+     * The trie node holds the shared keyword instance, so no substring is created.
+     * @param s the expression
+     * @param start the position to match at
+     * @return the trie node of the matched keyword, or null if no keyword starts there
+     */
+    private static Node matchKeyword(String s, int start) {
+        Node node = ROOT;
+        for (int i = start; i < s.length(); i++) {
+            node = node.get(s.charAt(i));
+            if (node == null) {
+                return null;
+            }
+            if (node.keyword != null) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    // Trie node: ASCII children in an array, other characters in a small sorted list
+    private static final class Node {
+        private Node ascii[];
+        private char otherKeys[] = new char[0];
+        private Node otherNodes[] = new Node[0];
+        private String keyword;
+        private Operator op;
+
+        Node get(char c) {
+            if (c < 128) {
+                return ascii == null ? null : ascii[c];
+            }
+            int index = Arrays.binarySearch(otherKeys, c);
+            return index >= 0 ? otherNodes[index] : null;
+        }
+
+        Node getOrCreate(char c) {
+            Node node = get(c);
+            if (node != null) {
+                return node;
+            }
+            node = new Node();
+            if (c < 128) {
+                if (ascii == null) {
+                    ascii = new Node[128];
+                }
+                ascii[c] = node;
+            } else {
+                int index = -Arrays.binarySearch(otherKeys, c) - 1;
+                char keys[] = new char[otherKeys.length + 1];
+                Node nodes[] = new Node[otherNodes.length + 1];
+                System.arraycopy(otherKeys, 0, keys, 0, index);
+                System.arraycopy(otherNodes, 0, nodes, 0, index);
+                keys[index] = c;
+                nodes[index] = node;
+                System.arraycopy(otherKeys, index, keys, index + 1, otherKeys.length - index);
+                System.arraycopy(otherNodes, index, nodes, index + 1, otherNodes.length - index);
+                otherKeys = keys;
+                otherNodes = nodes;
+            }
+            return node;
+        }
+    }
+}
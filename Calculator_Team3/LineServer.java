@@ -0,0 +1,428 @@
+package Calculator_Team3;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A TCP server speaking a newline-delimited protocol, for callers that need less overhead
+ * than HTTP. Every non-blank line sent is an expression or a command and gets exactly one
+ * line back, in order: {@code =} followed by the result, or {@code !} followed by the error.
+ * Clients can send many lines without waiting for the answers.
+ * <p>
+ * Commands set the calculation of the connection: {@code :radix 16}, {@code :deg},
+ * {@code :rad} and {@code :round 6}; {@code :stats} reports the request count and latency
+ * percentiles of the server. Each connection has its own ans variable, which every successful
+ * evaluation sets, as in the calculator window.
+ * <p>
+ * Connections are served by non-blocking selector loops, one per thread. Expressions are
+ * evaluated on the loop thread itself: they take microseconds, far less than a hand-off.
+ * The {@link EvaluationBudget} of the {@code calculator.budget.*} system properties bounds
+ * the ones that would not, so one bad line cannot stall the other connections of its loop.
+ */
+public class LineServer {
+    public static final int DEFAULT_PORT = 9090;
+
+    private static final int READ_BUFFER_BYTES = 16 << 10;
+    private static final int MAX_LINE_BYTES = 1 << 20;
+    // Output waiting for a slow client above which the connection stops reading
+    private static final int MAX_PENDING_OUTPUT_BYTES = 1 << 20;
+    private static final String USAGE = "usage: Main --tcp [--host address] [--port number] [--threads count]";
+
+    private final CalculatorEngine engine;
+    private final EvaluationBudget budget = EvaluationBudget.fromProperties();
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop loops[];
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private volatile boolean isRunning;
+
+    /**
+     * Creates a server; it accepts connections once started.
+     * @param engine the engine evaluating the expressions
+     * @param address the address and port to listen on; port 0 picks a free port
+     * @param threads the number of selector loops
+     * @throws IOException if the address cannot be bound
+     */
+    public LineServer(CalculatorEngine engine, InetSocketAddress address, int threads) throws IOException {
+        this.engine = engine;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, 1024);
+        serverChannel.configureBlocking(false);
+        this.loops = new EventLoop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Starts accepting connections.
+     */
+    public void start() {
+        isRunning = true;
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    /**
+     * Stops the server and closes every connection.
+     */
+    public void stop() {
+        isRunning = false;
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        for (EventLoop loop : loops) {
+            try {
+                loop.thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    /**
+     * Gets the address the server listens on.
+     * @return the bound address and port
+     * @throws IOException if the server is closed
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Runs the server until the JVM exits.
+     * @param args the options
+     * @return 0 once started, 2 on invalid arguments, 1 if the server cannot start
+     */
+    static int run(String[] args) {
+        String host = "127.0.0.1";
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--host") && i + 1 < args.length) {
+                    host = args[++i];
+                } else if (args[i].equals("--port") && i + 1 < args.length) {
+                    port = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else {
+                    throw new IllegalArgumentException("unexpected argument: " + args[i]);
+                }
+            }
+            if (port < 0 || port > 65535 || threads < 1) {
+                throw new IllegalArgumentException("invalid port or thread count");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+        try {
+            LineServer server = new LineServer(new CalculatorEngine(), new InetSocketAddress(host, port), threads);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            InetSocketAddress address = server.getAddress();
+            System.err.println("Listening on tcp://" + address.getHostString() + ":" + address.getPort() + " ("
+                    + threads + " threads)");
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Cannot start the server: " + e);
+            return 1;
+        }
+    }
+
+    // A selector thread serving its share of the connections
+    private final class EventLoop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        // Connections accepted by the first loop for this one
+        final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<SocketChannel>();
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "calculator-tcp-" + index);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (isRunning) {
+                    selector.select();
+                    SocketChannel channel;
+                    while ((channel = accepted.poll()) != null) {
+                        register(channel);
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            ((Connection) key.attachment()).handle();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                Trace.error("tcp", "selector failed: " + e);
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Connection) {
+                        ((Connection) key.attachment()).close();
+                    }
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    // Nothing left to release
+                }
+            }
+        }
+
+        // Accepts the waiting connections and spreads them over the loops
+        private void accept() throws IOException {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                EventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+                if (loop == this) {
+                    register(channel);
+                } else {
+                    loop.accepted.add(channel);
+                    loop.selector.wakeup();
+                }
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(channel, key));
+            } catch (IOException e) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Already failing
+                }
+            }
+        }
+    }
+
+    // The buffers and the calculation of one client
+    private final class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final CalculatorLogic logic = new CalculatorLogic(engine);
+        ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        ByteBuffer out = ByteBuffer.allocate(READ_BUFFER_BYTES); // In write mode, holding unsent output
+        byte line[] = new byte[256];
+        boolean isClosing; // The client finished sending; close once the output is sent
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            logic.setBudget(budget);
+        }
+
+        void handle() {
+            try {
+                if (key.isReadable()) {
+                    read();
+                }
+                if (key.isValid()) {
+                    write();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void read() throws IOException {
+            int count = channel.read(in);
+            if (count < 0) {
+                isClosing = true;
+                in.flip();
+                if (in.hasRemaining()) {
+                    answer(in.position(), in.limit()); // Last line without a line break
+                }
+                in.clear();
+                return;
+            }
+            in.flip();
+            int start = in.position();
+            for (int i = start; i < in.limit(); i++) {
+                if (in.get(i) == '\n') {
+                    answer(start, i);
+                    start = i + 1;
+                }
+            }
+            in.position(start);
+            in.compact();
+            if (!in.hasRemaining()) {
+                if (in.capacity() >= MAX_LINE_BYTES) {
+                    reply('!', "line longer than " + MAX_LINE_BYTES + " bytes");
+                    isClosing = true;
+                    in.clear();
+                    return;
+                }
+                ByteBuffer larger = ByteBuffer.allocate(in.capacity() * 2);
+                in.flip();
+                larger.put(in);
+                in = larger;
+            }
+        }
+
+        // Answers the line between two positions of the input buffer
+        private void answer(int start, int end) {
+            if (end > start && in.get(end - 1) == '\r') {
+                end--;
+            }
+            int length = end - start;
+            if (length > line.length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            boolean isAscii = true;
+            for (int i = 0; i < length; i++) {
+                line[i] = in.get(start + i);
+                isAscii &= line[i] >= 0;
+            }
+            String text = new String(line, 0, length,
+                    isAscii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8).trim();
+            if (text.isEmpty()) {
+                return;
+            }
+            if (text.charAt(0) == ':') {
+                command(text);
+                return;
+            }
+            long startTime = System.nanoTime();
+            logic.setError(false);
+            double ans;
+            try {
+                ans = logic.valueMath(text);
+            } catch (RuntimeException e) {
+                logic.setError(true);
+                ans = 0;
+            }
+            if (!logic.isError()) {
+                logic.setAns(ans);
+                reply('=', logic.numberToString(ans, logic.getRadix(), logic.getSizeRound()));
+            } else {
+                String message = logic.getErrorMessage();
+                reply('!', message != null ? message : BulkEvaluator.MATH_ERROR);
+            }
+            latency.record(System.nanoTime() - startTime);
+        }
+
+        private void command(String text) {
+            String parts[] = text.substring(1).trim().split("\\s+");
+            try {
+                switch (parts[0]) {
+                case "radix":
+                    int radix = Integer.parseInt(parts[1]);
+                    if (radix != 2 && radix != 8 && radix != 10 && radix != 16) {
+                        throw new IllegalArgumentException();
+                    }
+                    logic.setRadix(radix);
+                    break;
+                case "deg":
+                    logic.setDegOrRad(true);
+                    break;
+                case "rad":
+                    logic.setDegOrRad(false);
+                    break;
+                case "round":
+                    int sizeRound = Integer.parseInt(parts[1]);
+                    if (sizeRound < 0) {
+                        throw new IllegalArgumentException();
+                    }
+                    logic.setSizeRound(sizeRound);
+                    break;
+                case "stats":
+                    reply('=', String.format(Locale.ROOT,
+                            "requests %d p50_us %.1f p99_us %.1f p999_us %.1f max_us %.1f", latency.getCount(),
+                            latency.getPercentile(50) / 1e3, latency.getPercentile(99) / 1e3,
+                            latency.getPercentile(99.9) / 1e3, latency.getMax() / 1e3));
+                    return;
+                default:
+                    reply('!', "unknown command " + parts[0]);
+                    return;
+                }
+                reply('=', "ok");
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                reply('!', "invalid value for " + parts[0]);
+            }
+        }
+
+        private void reply(char status, String text) {
+            int length = text.length() + 2;
+            if (out.remaining() < length * 3) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + length * 3));
+                out.flip();
+                larger.put(out);
+                out = larger;
+            }
+            out.put((byte) status);
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    // Rare: error messages quoting symbols like √
+                    out.put(text.substring(i).getBytes(StandardCharsets.UTF_8));
+                    break;
+                }
+                out.put((byte) c);
+            }
+            out.put((byte) '\n');
+        }
+
+        // Sends what the socket takes; waits for writability and stops reading while too much is pending
+        private void write() throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+            int pending = out.position();
+            if (pending == 0 && isClosing) {
+                close();
+                return;
+            }
+            int ops = (pending > 0 ? SelectionKey.OP_WRITE : 0)
+                    | (pending < MAX_PENDING_OUTPUT_BYTES && !isClosing ? SelectionKey.OP_READ : 0);
+            if (key.interestOps() != ops) {
+                key.interestOps(ops);
+            }
+        }
+
+        void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already closed by the client
+            }
+        }
+    }
+}
@@ -1,7 +1,22 @@
 package Calculator_Team3;
 
+import java.util.Arrays;
+
 public class Main {
     public static void main(String[] args) {
+        // "--cli" evaluates expressions from standard input or a file without opening the window
+        if (args.length > 0 && args[0].equals("--cli")) {
+            System.exit(CommandLine.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        // "--server" (HTTP) and "--tcp" (line protocol) answer requests until the process is stopped
+        if (args.length > 0 && (args[0].equals("--server") || args[0].equals("--tcp"))) {
+            String options[] = Arrays.copyOfRange(args, 1, args.length);
+            int status = args[0].equals("--server") ? CalculatorServer.run(options) : LineServer.run(options);
+            if (status != 0) {
+                System.exit(status);
+            }
+            return;
+        }
 	    new CalculatorGUI();
     }
 }
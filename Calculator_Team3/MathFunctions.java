@@ -0,0 +1,195 @@
+package Calculator_Team3;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Operator implementations shared by the compiled evaluation tiers.
+ * Unlike the interpreter, {@code CalculatorEngine.run}, which reports errors in the
+ * {@link EvaluationContext}, these functions return NaN for a math error (division by zero,
+ * square root of a negative number, bitwise operators on non-integers, ...).
+ * Generated code calls them directly, so they must stay static and package visible.
+ */
+final class MathFunctions {
+    private MathFunctions() {
+    }
+
+    /**
+     * Applies an operator to its operands.
+     * @param op the operator
+     * @param a the operand of a unary operator, or the left operand of a binary one
+     * @param b the right operand of a binary operator (ignored for unary operators)
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @return the result, or NaN for a math error
+     */
+    static double apply(Operator op, double a, double b, boolean isDegOrRad) {
+        switch (op) {
+        case NEGATE:
+            return -a;
+        case SIN:
+            return isDegOrRad ? sinDeg(a) : Math.sin(a);
+        case COS:
+            return isDegOrRad ? cosDeg(a) : Math.cos(a);
+        case TAN:
+            return isDegOrRad ? tanDeg(a) : Math.tan(a);
+        case LOG:
+            return Math.log10(a);
+        case LN:
+            return Math.log(a);
+        case RECIPROCAL:
+            return reciprocal(a);
+        case PERCENT:
+            return percent(a);
+        case DEGREE:
+            return toRadians(a);
+        case SQUARE:
+            return square(a);
+        case SQRT:
+            return Math.sqrt(a);
+        case NOT:
+            return not(a);
+        case FACTORIAL:
+            return factorial(a);
+        case ADD:
+            return a + b;
+        case SUBTRACT:
+            return a - b;
+        case MULTIPLY:
+            return a * b;
+        case DIVIDE:
+            return divide(a, b);
+        case POWER:
+            return power(a, b);
+        case AND:
+            return and(a, b);
+        case OR:
+            return or(a, b);
+        case XOR:
+            return xor(a, b);
+        case MOD:
+            return mod(a, b);
+        case SHIFT_LEFT:
+            return shiftLeft(a, b);
+        case SHIFT_RIGHT:
+            return shiftRight(a, b);
+        default:
+            return Double.NaN;
+        }
+    }
+
+    static double negate(double num) {
+        return -num;
+    }
+
+    static double add(double a, double b) {
+        return a + b;
+    }
+
+    static double subtract(double a, double b) {
+        return a - b;
+    }
+
+    static double multiply(double a, double b) {
+        return a * b;
+    }
+
+    static double percent(double num) {
+        return num / 100;
+    }
+
+    static boolean isInteger(double num) {
+        return (long) num == num;
+    }
+
+    static double toRadians(double num) {
+        return num * Math.PI / 180;
+    }
+
+    static double sinDeg(double num) {
+        return Math.sin(toRadians(num));
+    }
+
+    static double cosDeg(double num) {
+        return Math.cos(toRadians(num));
+    }
+
+    static double tanDeg(double num) {
+        return Math.tan(toRadians(num));
+    }
+
+    static double square(double num) {
+        return num * num;
+    }
+
+    // Math.pow(NaN, 0) is 1, which would hide an error in the base
+    static double power(double a, double b) {
+        return Double.isNaN(a) ? Double.NaN : Math.pow(a, b);
+    }
+
+    static double divide(double a, double b) {
+        return b == 0 ? Double.NaN : a / b;
+    }
+
+    static double reciprocal(double num) {
+        return num == 0 ? Double.NaN : 1 / num;
+    }
+
+    static double not(double num) {
+        return isInteger(num) && num >= 0 ? ~(long) num : Double.NaN;
+    }
+
+    static double factorial(double num) {
+        return Factorial.factorial(num);
+    }
+
+    // Iterations between checkpoints in long loops, minus one
+    static final int CHECK_INTERVAL = (1 << 20) - 1;
+
+    /**
+     * Called every {@code CHECK_INTERVAL + 1} iterations of a long loop. Stops the computation
+     * when its thread is interrupted, which is how a caller cancels an evaluation that is no
+     * longer wanted, or when the iterations exceed the budget of the evaluation.
+     * @throws CancellationException if the current thread is interrupted
+     * @throws BudgetExceededException if the evaluation exceeds its budget
+     */
+    static void checkpoint() {
+        checkpoint(CHECK_INTERVAL + 1);
+    }
+
+    /**
+     * Called after a step of a computation that costs many operations, such as a term of a
+     * series in decimal arithmetic. Stops the computation like {@link #checkpoint()}.
+     * @param operations the operations done since the last checkpoint
+     * @throws CancellationException if the current thread is interrupted
+     * @throws BudgetExceededException if the evaluation exceeds its budget
+     */
+    static void checkpoint(long operations) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("evaluation interrupted");
+        }
+        BudgetMeter.chargeActive(operations);
+    }
+
+    static double and(double a, double b) {
+        return isInteger(a) && isInteger(b) ? (long) a & (long) b : Double.NaN;
+    }
+
+    static double or(double a, double b) {
+        return isInteger(a) && isInteger(b) ? (long) a | (long) b : Double.NaN;
+    }
+
+    static double xor(double a, double b) {
+        return isInteger(a) && isInteger(b) ? (long) a ^ (long) b : Double.NaN;
+    }
+
+    static double mod(double a, double b) {
+        return isInteger(a) && isInteger(b) && b != 0 ? (long) a % (long) b : Double.NaN;
+    }
+
+    static double shiftLeft(double a, double b) {
+        return isInteger(a) && isInteger(b) ? (long) a << (long) b : Double.NaN;
+    }
+
+    static double shiftRight(double a, double b) {
+        return isInteger(a) && isInteger(b) ? (int) a >> (int) b : Double.NaN;
+    }
+}
@@ -0,0 +1,108 @@
+package Calculator_Team3;
+
+import java.util.Arrays;
+
+/**
+ * Bounded cache of the results of a pure function, keyed on its argument values.
+ * The table is direct-mapped: each argument list hashes to one entry, which a new
+ * result simply replaces, so lookups and updates take constant time and the size
+ * never changes. Keys are the bits of the arguments in a long array and results are
+ * kept in a double array, so nothing is boxed or allocated after creation.
+ * A table is not thread-safe; it belongs to one {@link EvaluationContext}.
+ */
+final class MemoTable {
+    private final int arity;
+    private final int mask;
+    private final long keys[];
+    private final double values[]; // NaN marks an empty entry
+    private long hitCount, missCount;
+
+    /**
+     * Creates an empty table.
+     * @param arity the number of arguments of the function
+     * @param capacity the number of entries, rounded up to a power of two
+     */
+    MemoTable(int arity, int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.arity = arity;
+        this.mask = size - 1;
+        this.keys = new long[size * arity];
+        this.values = new double[size];
+        Arrays.fill(values, Double.NaN);
+    }
+
+    /**
+     * Looks up the result for some arguments and records a hit or a miss.
+     * @param args the argument values, at least arity of them
+     * @return the remembered result, or NaN if there is none
+     */
+    double get(double[] args) {
+        int index = index(args);
+        double value = values[index];
+        if (!Double.isNaN(value) && matches(args, index * arity)) {
+            hitCount++;
+            return value;
+        }
+        missCount++;
+        return Double.NaN;
+    }
+
+    /**
+     * Remembers the result for some arguments, replacing the entry they hash to.
+     * NaN results are not remembered, since NaN marks empty entries.
+     * @param args the argument values, at least arity of them
+     * @param value the result
+     */
+    void put(double[] args, double value) {
+        int index = index(args);
+        int base = index * arity;
+        for (int i = 0; i < arity; i++) {
+            keys[base + i] = Double.doubleToLongBits(args[i]);
+        }
+        values[index] = value;
+    }
+
+    /**
+     * Gets the number of lookups that found a result.
+     * @return the hit count
+     */
+    long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of lookups that found no result.
+     * @return the miss count
+     */
+    long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the number of entries.
+     * @return the capacity of the table
+     */
+    int getCapacity() {
+        return values.length;
+    }
+
+    private boolean matches(double[] args, int base) {
+        for (int i = 0; i < arity; i++) {
+            if (keys[base + i] != Double.doubleToLongBits(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Mixes every bit of the arguments into the index; integers differ only in their high bits
+    private int index(double[] args) {
+        long h = 0;
+        for (int i = 0; i < arity; i++) {
+            h = h * 31 + Double.doubleToLongBits(args[i]);
+        }
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return (int) (h ^ (h >>> 33)) & mask;
+    }
+}
@@ -0,0 +1,180 @@
+package Calculator_Team3;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Compiles an expression into a tree of composed method handles.
+ * Building the tree is much cheaper than generating a class, while the JIT compiler
+ * can still inline the whole tree once it is hot, which makes this the middle tier
+ * between the interpreter and {@link BytecodeCompiler}.
+ */
+final class MethodHandleCompiler {
+    // Deeper trees are left to the interpreter to keep handle invocation shallow
+    private static final int MAX_TOKENS = 2000;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType UNARY = MethodType.methodType(double.class, double.class);
+    private static final MethodType BINARY = MethodType.methodType(double.class, double.class, double.class);
+    private static final MethodHandle ARRAY_GETTER = MethodHandles.arrayElementGetter(double[].class);
+
+    private final CompiledExpression expression;
+    private final boolean isDegOrRad;
+
+    private MethodHandleCompiler(CompiledExpression expression, boolean isDegOrRad) {
+        this.expression = expression;
+        this.isDegOrRad = isDegOrRad;
+    }
+
+    /**
+     * Compiles an expression into a method handle formula.
+     * @param expression the compiled expression
+     * @param isDegOrRad true if trigonometric functions take degrees
+     * @return the formula, or null if the expression cannot be compiled
+     */
+    static CompiledFormula compile(CompiledExpression expression, boolean isDegOrRad) {
+        if (!BytecodeCompiler.isCompilable(expression) || expression.getPostfix().length > MAX_TOKENS) {
+            return null;
+        }
+        try {
+            MethodHandleCompiler compiler = new MethodHandleCompiler(expression, isDegOrRad);
+            MethodHandle fromArray = compiler.build(true);
+            MethodHandle fromArguments = compiler.build(false);
+            Formula formula = new Formula(fromArray, fromArguments);
+            formula.setParameters(expression.getParameterNames());
+            return formula;
+        } catch (ReflectiveOperationException e) {
+            if (Trace.ERRORS) {
+                Trace.error("methodHandle", "compilation failed: " + e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Builds the handle tree by running the postfix tokens on a stack of handles.
+     * @param fromArray true for a (double[])double tree reading variables by slot,
+     *        false for a (double,double)double tree binding the first two parameters
+     * @return the root of the tree
+     */
+    private MethodHandle build(boolean fromArray) throws ReflectiveOperationException {
+        Class<?> parameterTypes[] = fromArray ? new Class<?>[] { double[].class }
+                : new Class<?>[] { double.class, double.class };
+        MethodHandle stack[] = new MethodHandle[expression.getMaxDepth()];
+        int top = 0;
+        for (Token t : expression.getPostfix()) {
+            if (t.kind == Token.VARIABLE) {
+                stack[top++] = variable(t.slot, fromArray, parameterTypes);
+            } else if (t.kind != Token.OPERATOR) {
+                stack[top++] = constant(t.value, parameterTypes);
+            } else if (t.op.getArity() == 2) {
+                MethodHandle right = stack[--top];
+                MethodHandle left = stack[--top];
+                stack[top++] = binary(function(t.op, BINARY), left, right, parameterTypes.length);
+            } else {
+                stack[top - 1] = MethodHandles.filterReturnValue(stack[top - 1], function(t.op, UNARY));
+            }
+        }
+        return stack[top - 1];
+    }
+
+    private static MethodHandle constant(double value, Class<?>[] parameterTypes) {
+        return MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0, parameterTypes);
+    }
+
+    private MethodHandle variable(int slot, boolean fromArray, Class<?>[] parameterTypes) {
+        if (fromArray) {
+            return MethodHandles.insertArguments(ARRAY_GETTER, 1, slot);
+        }
+        if (slot > 1) {
+            return constant(Double.NaN, parameterTypes); // The slot is the parameter index
+        }
+        // Keep argument "slot" and drop the other one
+        return MethodHandles.dropArguments(MethodHandles.identity(double.class), 1 - slot, double.class);
+    }
+
+    // Feeds both subtrees into a binary function and merges their identical parameter lists
+    private static MethodHandle binary(MethodHandle function, MethodHandle left, MethodHandle right,
+            int parameterCount) {
+        MethodHandle combined = MethodHandles.collectArguments(
+                MethodHandles.collectArguments(function, 1, right), 0, left);
+        int reorder[] = new int[parameterCount * 2];
+        for (int i = 0; i < reorder.length; i++) {
+            reorder[i] = i % parameterCount;
+        }
+        return MethodHandles.permuteArguments(combined, left.type(), reorder);
+    }
+
+    private MethodHandle function(Operator op, MethodType type) throws ReflectiveOperationException {
+        String name;
+        Class<?> owner = MathFunctions.class;
+        switch (op) {
+        case SIN:
+        case COS:
+        case TAN:
+            name = op.toString() + (isDegOrRad ? "Deg" : "");
+            owner = isDegOrRad ? MathFunctions.class : Math.class;
+            break;
+        case LOG:
+            name = "log10";
+            owner = Math.class;
+            break;
+        case LN:
+            name = "log";
+            owner = Math.class;
+            break;
+        case SQRT:
+            name = "sqrt";
+            owner = Math.class;
+            break;
+        case DEGREE:
+            name = "toRadians";
+            break;
+        case SHIFT_LEFT:
+            name = "shiftLeft";
+            break;
+        case SHIFT_RIGHT:
+            name = "shiftRight";
+            break;
+        default:
+            // NEGATE, ADD, ..., POWER, NOT, FACTORIAL, AND, ... share their names with MathFunctions
+            name = op.name().toLowerCase();
+            break;
+        }
+        return LOOKUP.findStatic(owner, name, type);
+    }
+
+    // Formula backed by the two handle trees
+    private static final class Formula extends CompiledFormula {
+        private final MethodHandle fromArray;
+        private final MethodHandle fromArguments;
+
+        Formula(MethodHandle fromArray, MethodHandle fromArguments) {
+            this.fromArray = fromArray;
+            this.fromArguments = fromArguments;
+        }
+
+        @Override
+        public double evaluate(double[] variables) {
+            try {
+                return (double) fromArray.invokeExact(variables);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public double applyAsDouble(double x, double y) {
+            try {
+                return (double) fromArguments.invokeExact(x, y);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
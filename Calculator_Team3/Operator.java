@@ -0,0 +1,103 @@
+package Calculator_Team3;
+
+/**
+ * Table of every operator, function and parenthesis the calculator understands.
+ * Each entry lists the symbols that spell it, its precedence in the order of
+ * operations (higher binds tighter), the number of operands it takes, and whether
+ * it is written before (prefix) or after (postfix) its operand.
+ * Binary operators are left-associative, so 2^3^2 is (2^3)^2.
+ */
+enum Operator {
+    STORE(1, 2, false, false, "→", "sto"),
+    ADD(2, 2, false, false, "+"),
+    SUBTRACT(2, 2, false, false, "-"),
+    MULTIPLY(3, 2, false, false, "*"),
+    DIVIDE(3, 2, false, false, "/"),
+    AND(4, 2, false, false, "and", "∧"),
+    OR(4, 2, false, false, "or", "∨"),
+    XOR(4, 2, false, false, "xor", "⊻"),
+    MOD(4, 2, false, false, "mod"),
+    SHIFT_LEFT(4, 2, false, false, "<<", "≪"),
+    SHIFT_RIGHT(4, 2, false, false, ">>", "≫"),
+    NOT(5, 1, true, false, "not", "¬"),
+    NEGATE(6, 1, true, false, "~"),
+    SIN(7, 1, true, false, "sin"),
+    COS(7, 1, true, false, "cos"),
+    TAN(7, 1, true, false, "tan"),
+    LOG(7, 1, true, false, "log"),
+    LN(7, 1, true, false, "ln"),
+    RECIPROCAL(7, 1, true, false, "1/"),
+    SQRT(8, 1, true, false, "√", "sqrt"),
+    POWER(8, 2, false, false, "^"),
+    FACTORIAL(8, 1, false, true, "!"),
+    SQUARE(8, 1, false, true, "²"),
+    DEGREE(8, 1, false, false, "°"),
+    PERCENT(0, 1, false, false, "%"),
+    OPEN_PARENTHESIS(0, 0, true, false, "("),
+    CLOSE_PARENTHESIS(0, 0, false, false, ")"),
+    COMMA(0, 0, false, false, ","),
+    // Call of a user function; it has no symbol since the function name spells it
+    CALL(9, 0, true, false);
+
+    private final int precedence;
+    private final int arity;
+    private final boolean prefix;
+    private final boolean postfix;
+    private final String symbols[];
+
+    Operator(int precedence, int arity, boolean prefix, boolean postfix, String... symbols) {
+        this.precedence = precedence;
+        this.arity = arity;
+        this.prefix = prefix;
+        this.postfix = postfix;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Gets the precedence in the order of operations.
+     * @return the precedence (higher means higher precedence)
+     */
+    int getPrecedence() {
+        return precedence;
+    }
+
+    /**
+     * Gets the number of operands the operator takes.
+     * @return 1 for unary operators, 2 for binary operators, 0 for parentheses, commas
+     *         and calls, whose tokens give the number of arguments
+     */
+    int getArity() {
+        return arity;
+    }
+
+    /**
+     * Checks if the operator is written before its operand, like a function.
+     * Prefix operators never pop other operators off the Shunting-yard stack.
+     * @return true for prefix operators and the opening parenthesis
+     */
+    boolean isPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Checks if the operator is written after its operand and may be followed
+     * directly by a number, as in "3!2!".
+     * @return true for postfix operators
+     */
+    boolean isPostfix() {
+        return postfix;
+    }
+
+    /**
+     * Gets the symbols that spell this operator.
+     * @return the symbols, the first one being the canonical spelling
+     */
+    String[] getSymbols() {
+        return symbols.clone();
+    }
+
+    @Override
+    public String toString() {
+        return symbols.length > 0 ? symbols[0] : name().toLowerCase();
+    }
+}
@@ -0,0 +1,101 @@
+package Calculator_Team3;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the variable names of an {@link EvaluationContext} to the slots holding their values.
+ * Each context has its own table, so the names one context stores into take no room in
+ * the others and are forgotten with it. A name gets its slot when a value is first stored
+ * into it, so words that are only read take none. Compiled expressions number their own
+ * variables and the context binds those numbers to its slots when it evaluates them, see
+ * {@link EvaluationContext#bind(CompiledExpression)}.
+ */
+final class SymbolTable {
+    // Slot of the ans variable, which every context defines
+    static final int ANS = 0;
+
+    private final Map<String, Integer> slots;
+    private final int capacity;
+
+    /**
+     * Creates a table holding the given names in the first slots.
+     * @param capacity the most names the table may hold
+     * @param predefined the names of the first slots
+     */
+    SymbolTable(int capacity, String... predefined) {
+        this.slots = new HashMap<String, Integer>();
+        this.capacity = capacity;
+        for (String name : predefined) {
+            define(name);
+        }
+    }
+
+    private SymbolTable(SymbolTable table) {
+        this.slots = new HashMap<String, Integer>(table.slots);
+        this.capacity = table.capacity;
+    }
+
+    /**
+     * Gets the slot of a name.
+     * @param name the variable name
+     * @return the slot, or -1 if the name has no slot yet
+     */
+    int slot(String name) {
+        Integer slot = slots.get(name);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Gets the slot of a name, giving it the next free slot on first use.
+     * @param name the variable name
+     * @return the slot, or -1 if the table is full
+     */
+    int define(String name) {
+        Integer slot = slots.get(name);
+        if (slot != null) {
+            return slot;
+        }
+        if (slots.size() >= capacity) {
+            return -1;
+        }
+        int next = slots.size();
+        slots.put(name, next);
+        return next;
+    }
+
+    /**
+     * Gets the number of slots in use.
+     * @return the number of known names
+     */
+    int size() {
+        return slots.size();
+    }
+
+    /**
+     * Copies the table, for a copy of its context.
+     * @return a table with the same names in the same slots
+     */
+    SymbolTable copy() {
+        return new SymbolTable(this);
+    }
+
+    /**
+     * Checks if a word can name a variable: a letter followed by letters or underscores.
+     * Digits are not allowed, since the lexer ends a word at a digit.
+     * @param word the word to check
+     * @return true if the word is a valid variable name
+     */
+    static boolean isName(String word) {
+        if (word.isEmpty() || !Character.isLetter(word.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (!Character.isLetter(c) && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,273 @@
+package Calculator_Team3;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Tabulates an expression over a range of values of one of its variables, for plots and tables.
+ * The expression is compiled once into a {@link CompiledFormula} and the points are evaluated
+ * in parallel chunks on a fork/join pool, either into one array or streamed in order to a
+ * consumer, chunk by chunk, so a streamed sweep of any length needs only a few chunks of memory.
+ * The variable at point i is start + i * step, computed from the index so that rounding errors
+ * do not add up over long sweeps. The other variables keep their values in the given context.
+ */
+public class Tabulator {
+    // Points per task; large enough that splitting costs little next to evaluating
+    private static final int CHUNK_POINTS = 1 << 14;
+    // Points per streamed chunk
+    private static final int STREAM_CHUNK_POINTS = 1 << 16;
+
+    private final CalculatorEngine engine;
+    private final ForkJoinPool pool;
+
+    /**
+     * Receives the points of a streamed sweep, chunk by chunk in order.
+     */
+    public interface ChunkConsumer {
+        /**
+         * Receives consecutive points of the sweep.
+         * @param first the index of the first point
+         * @param x the value of the variable at each point
+         * @param y the result at each point, NaN for a math error
+         * @param count the number of points in the arrays
+         * @throws IOException if the points cannot be written
+         */
+        void accept(long first, double[] x, double[] y, int count) throws IOException;
+    }
+
+    /**
+     * Creates a tabulator running on the common fork/join pool.
+     * @param engine the engine compiling the expressions
+     */
+    public Tabulator(CalculatorEngine engine) {
+        this(engine, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a tabulator running on the given pool.
+     * @param engine the engine compiling the expressions
+     * @param pool the pool evaluating the chunks
+     */
+    public Tabulator(CalculatorEngine engine, ForkJoinPool pool) {
+        this.engine = engine;
+        this.pool = pool;
+    }
+
+    /**
+     * Evaluates an expression at evenly spaced points from start to end, both included.
+     * @param math the expression
+     * @param variable the name of the variable that runs over the range
+     * @param start the value of the variable at the first point
+     * @param end the value of the variable at the last point
+     * @param points the number of points
+     * @param context the radix, the angle mode and the values of the other variables
+     * @return the result at every point, NaN for points with a math error
+     * @throws IllegalArgumentException if the variable name or the range is invalid
+     */
+    public double[] tabulate(String math, String variable, double start, double end, int points,
+            EvaluationContext context) {
+        Sweep sweep = sweep(math, variable, start, end, points, context);
+        double results[] = new double[points];
+        pool.invoke(new SweepTask(sweep, results, 0, points));
+        return results;
+    }
+
+    /**
+     * Evaluates an expression at the points from start to end by step. The end is included
+     * when it falls on a step, up to rounding.
+     * @param math the expression
+     * @param variable the name of the variable that runs over the range
+     * @param start the value of the variable at the first point
+     * @param end the bound of the range
+     * @param step the distance between the points, negative if end is below start
+     * @param context the radix, the angle mode and the values of the other variables
+     * @return the result at every point, NaN for points with a math error
+     * @throws IllegalArgumentException if the variable name or the range is invalid
+     */
+    public double[] tabulateByStep(String math, String variable, double start, double end, double step,
+            EvaluationContext context) {
+        long points = pointCount(start, end, step);
+        if (points > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("too many points for an array: " + points);
+        }
+        Sweep sweep = new Sweep(math, variable, start, step, Double.NaN, points, context);
+        double results[] = new double[(int) points];
+        pool.invoke(new SweepTask(sweep, results, 0, (int) points));
+        return results;
+    }
+
+    /**
+     * Evaluates an expression at evenly spaced points from start to end, both included, and
+     * hands the points to a consumer in order as they are ready. A few chunks per thread are
+     * evaluated ahead of the consumer, so a slow consumer holds back the evaluation.
+     * @param math the expression
+     * @param variable the name of the variable that runs over the range
+     * @param start the value of the variable at the first point
+     * @param end the value of the variable at the last point
+     * @param points the number of points
+     * @param context the radix, the angle mode and the values of the other variables
+     * @param consumer the consumer of the points, called from the calling thread
+     * @throws IOException if the consumer fails or the sweep is interrupted
+     * @throws IllegalArgumentException if the variable name or the range is invalid
+     */
+    public void stream(String math, String variable, double start, double end, long points,
+            EvaluationContext context, ChunkConsumer consumer) throws IOException {
+        Sweep sweep = sweep(math, variable, start, end, points, context);
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+        int maxPending = pool.getParallelism() * 2;
+        try {
+            for (long first = 0; first < points; first += STREAM_CHUNK_POINTS) {
+                long chunkFirst = first;
+                int count = (int) Math.min(STREAM_CHUNK_POINTS, points - first);
+                pending.add(pool.submit(() -> sweep.chunk(chunkFirst, count)));
+                if (pending.size() >= maxPending) {
+                    deliver(pending.remove(), consumer);
+                }
+            }
+            while (!pending.isEmpty()) {
+                deliver(pending.remove(), consumer);
+            }
+        } finally {
+            for (Future<Chunk> future : pending) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Counts the points from start to end by step.
+     * @param start the first value
+     * @param end the bound of the range
+     * @param step the distance between the points
+     * @return the number of points, including end when it falls on a step up to rounding
+     * @throws IllegalArgumentException if the step is 0, not finite or points away from end
+     */
+    public static long pointCount(double start, double end, double step) {
+        double steps = (end - start) / step;
+        if (!(steps >= 0) || Double.isInfinite(steps) || !Double.isFinite(start)) {
+            throw new IllegalArgumentException("invalid range: from " + start + " to " + end + " by " + step);
+        }
+        return (long) Math.floor(steps + 1e-9 * Math.max(1, steps)) + 1;
+    }
+
+    private Sweep sweep(String math, String variable, double start, double end, long points,
+            EvaluationContext context) {
+        if (points < 1 || !Double.isFinite(start) || !Double.isFinite(end)) {
+            throw new IllegalArgumentException("invalid range: " + points + " points from " + start + " to " + end);
+        }
+        double step = points > 1 ? (end - start) / (points - 1) : 0;
+        return new Sweep(math, variable, start, step, end, points, context);
+    }
+
+    private static void deliver(Future<Chunk> future, ChunkConsumer consumer) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("evaluation failed", e.getCause());
+        }
+        consumer.accept(chunk.first, chunk.x, chunk.y, chunk.y.length);
+    }
+
+    // The compiled expression and the range of one sweep
+    private final class Sweep {
+        final CompiledFormula formula;
+        final int slot;
+        final double variables[];
+        final double start, step, end;
+        final long last;
+
+        Sweep(String math, String variable, double start, double step, double end, long points,
+                EvaluationContext context) {
+            String name = variable.toLowerCase();
+            if (!name.equals("ans") && !CalculatorEngine.isVariableName(name)) {
+                throw new IllegalArgumentException("invalid variable: " + variable);
+            }
+            CompiledExpression expression = engine.compile(math, context.getRadix(), context.isDegOrRad());
+            formula = CalculatorEngine.toFormula(expression, context.isDegOrRad());
+            // Undefined variables stay NaN, so points reading them are NaN like other math errors
+            String names[] = expression.getParameterNames();
+            variables = new double[names.length];
+            int index = -1;
+            for (int i = 0; i < names.length; i++) {
+                variables[i] = context.getVariable(names[i]);
+                if (names[i].equals(name)) {
+                    index = i;
+                }
+            }
+            slot = index; // -1 if the expression does not read the variable
+            this.start = start;
+            this.step = step;
+            this.end = end;
+            this.last = Double.isNaN(end) ? -1 : points - 1;
+        }
+
+        // The last point of a sweep to an end is the end itself, whatever the rounding of step
+        double x(long index) {
+            return index == last ? end : start + index * step;
+        }
+
+        void evaluate(long first, int count, double[] x, double[] y, int offset) {
+            double values[] = variables.clone();
+            for (int i = 0; i < count; i++) {
+                double value = x(first + i);
+                if (x != null) {
+                    x[i] = value;
+                }
+                if (slot >= 0) {
+                    values[slot] = value;
+                }
+                y[offset + i] = formula.evaluate(values);
+            }
+        }
+
+        Chunk chunk(long first, int count) {
+            Chunk chunk = new Chunk(first, count);
+            evaluate(first, count, chunk.x, chunk.y, 0);
+            return chunk;
+        }
+    }
+
+    // The points of one streamed chunk
+    private static final class Chunk {
+        final long first;
+        final double x[], y[];
+
+        Chunk(long first, int count) {
+            this.first = first;
+            this.x = new double[count];
+            this.y = new double[count];
+        }
+    }
+
+    private static final class SweepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Sweep sweep;
+        private final double results[];
+        private final int from, to;
+
+        SweepTask(Sweep sweep, double[] results, int from, int to) {
+            this.sweep = sweep;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_POINTS) {
+                sweep.evaluate(from, to - from, null, results, from);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SweepTask(sweep, results, from, middle), new SweepTask(sweep, results, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package Calculator_Team3;
+
+/**
+ * A single element of an expression as it flows from the lexer through
+ * standardization and postfix conversion to evaluation.
+ * Operands are classified and parsed once, when the token is created.
+ */
+final class Token {
+    static final int LITERAL = 0; // Number written in the expression
+    static final int CONSTANT = 1; // Named constant such as pi or e
+    static final int VARIABLE = 2; // Variable such as ans, read at evaluation time
+    static final int NAME = 3; // Word that is neither a number nor a known name
+    static final int OPERATOR = 4; // Operator, function or parenthesis
+
+    final int kind;
+    final Operator op;
+    final String text;
+    final double value;
+    final int slot;
+    final int arity; // Number of operands an operator takes, 0 for operands
+    final boolean valid;
+    final int offset;
+
+    private Token(int kind, Operator op, String text, double value, int slot, int arity, boolean valid,
+            int offset) {
+        this.kind = kind;
+        this.op = op;
+        this.text = text;
+        this.value = value;
+        this.slot = slot;
+        this.arity = arity;
+        this.valid = valid;
+        this.offset = offset;
+    }
+
+    /**
+     * Creates a number token (a literal or a named constant).
+     * @param kind LITERAL or CONSTANT
+     * @param text the source text of the number
+     * @param value the parsed value
+     * @param valid false if the number is malformed in the current radix
+     * @param offset the position of the token in the source
+     * @return the token
+     */
+    static Token number(int kind, String text, double value, boolean valid, int offset) {
+        return new Token(kind, null, text, value, -1, 0, valid, offset);
+    }
+
+    /**
+     * Creates a variable token.
+     * @param text the variable name
+     * @param slot the number of the variable in its expression, or the index of a parameter
+     * @param offset the position of the token in the source
+     * @return the token
+     */
+    static Token variable(String text, int slot, int offset) {
+        return new Token(VARIABLE, null, text, 0, slot, 0, true, offset);
+    }
+
+    /**
+     * Creates a token for a word that does not name a number.
+     * @param text the word
+     * @param offset the position of the token in the source
+     * @return the token
+     */
+    static Token name(String text, int offset) {
+        return new Token(NAME, null, text, -1, -1, 0, false, offset);
+    }
+
+    /**
+     * Creates an operator token.
+     * @param op the operator
+     * @param symbol the operator symbol as written in the source
+     * @param offset the position of the token in the source
+     * @return the token
+     */
+    static Token operator(Operator op, String symbol, int offset) {
+        return new Token(OPERATOR, op, symbol, 0, -1, op.getArity(), true, offset);
+    }
+
+    /**
+     * Creates an operator token that does not appear in the source, such as an
+     * implicit multiplication.
+     * @param op the operator
+     * @param offset the position the operator is inserted at
+     * @return the token
+     */
+    static Token operator(Operator op, int offset) {
+        return new Token(OPERATOR, op, op.toString(), 0, -1, op.getArity(), true, offset);
+    }
+
+    /**
+     * Creates the token of a call to a user function.
+     * @param name the function name, by which the context finds the function
+     * @param arity the number of arguments written in the call
+     * @param offset the position of the function name in the source
+     * @return the token
+     */
+    static Token call(String name, int arity, int offset) {
+        return new Token(OPERATOR, Operator.CALL, name, 0, -1, arity, true, offset);
+    }
+
+    /**
+     * Gets the same token at another position, for a token that moved when the text
+     * before it was edited.
+     * @param offset the new position of the token in the source
+     * @return the moved token, or this token if the position is the same
+     */
+    Token at(int offset) {
+        return offset == this.offset ? this : new Token(kind, op, text, value, slot, arity, valid, offset);
+    }
+
+    /**
+     * Checks if the token is an operand that stands for a number.
+     * @return true for literals, constants and variables
+     */
+    boolean isNumber() {
+        return kind <= VARIABLE;
+    }
+
+    /**
+     * Checks if the token names a variable or constant.
+     * @return true for constants and variables
+     */
+    boolean isVarOrConst() {
+        return kind == CONSTANT || kind == VARIABLE;
+    }
+
+    /**
+     * Checks if the token is the given operator.
+     * @param op the operator
+     * @return true if this is that operator
+     */
+    boolean is(Operator op) {
+        return this.op == op;
+    }
+
+    /**
+     * Checks if the token is a prefix operator, such as a function.
+     * @return true if the token is a prefix operator
+     */
+    boolean isPrefix() {
+        return op != null && op.isPrefix();
+    }
+
+    /**
+     * Checks if the token is a postfix operator, such as "!".
+     * @return true if the token is a postfix operator
+     */
+    boolean isPostfix() {
+        return op != null && op.isPostfix();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,83 @@
+package Calculator_Team3;
+
+import java.io.PrintStream;
+
+/**
+ * Leveled tracing of the evaluation stages into an in-memory ring buffer.
+ * The level is read once from the {@code calculator.trace} system property:
+ * {@code off} (the default), {@code error} or {@code step}. Call sites test the
+ * static final {@link #ERRORS} and {@link #STEPS} flags before building a message,
+ * so the JIT compiler removes the tracing entirely when it is off.
+ * When an error is recorded, the buffered steps leading up to it are printed to
+ * {@link System#err}.
+ */
+final class Trace {
+    static final int OFF = 0;
+    static final int ERROR = 1;
+    static final int STEP = 2;
+
+    static final int LEVEL = level(System.getProperty("calculator.trace", "off"));
+    static final boolean ERRORS = LEVEL >= ERROR;
+    static final boolean STEPS = LEVEL >= STEP;
+
+    private static final int SIZE = Math.max(Integer.getInteger("calculator.trace.size", 256), 1);
+    private static final long times[] = new long[SIZE];
+    private static final String stages[] = new String[SIZE];
+    private static final String messages[] = new String[SIZE];
+    private static int next;
+    private static int count;
+
+    private Trace() {
+    }
+
+    private static int level(String name) {
+        switch (name.toLowerCase()) {
+        case "error":
+            return ERROR;
+        case "step":
+            return STEP;
+        default:
+            return OFF;
+        }
+    }
+
+    /**
+     * Records an evaluation step. Callers check {@link #STEPS} first.
+     * @param stage the stage recording the step (lexer, parser, ...)
+     * @param message the step
+     */
+    static synchronized void step(String stage, String message) {
+        times[next] = System.nanoTime();
+        stages[next] = stage;
+        messages[next] = message;
+        next = (next + 1) % SIZE;
+        count = Math.min(count + 1, SIZE);
+    }
+
+    /**
+     * Records an error and prints it with the steps before it to the standard error stream.
+     * Callers check {@link #ERRORS} first.
+     * @param stage the stage reporting the error
+     * @param message the error
+     */
+    static synchronized void error(String stage, String message) {
+        step(stage, "Error " + message);
+        dump(System.err);
+    }
+
+    /**
+     * Prints the buffered records, oldest first, and clears the buffer.
+     * @param out the stream to print to
+     */
+    static synchronized void dump(PrintStream out) {
+        int first = (next - count + SIZE) % SIZE;
+        long start = times[first];
+        for (int i = 0; i < count; i++) {
+            int j = (first + i) % SIZE;
+            out.printf("%10.3f ms  %-12s %s%n", (times[j] - start) / 1e6, stages[j], messages[j]);
+            stages[j] = null;
+            messages[j] = null;
+        }
+        count = 0;
+    }
+}
@@ -0,0 +1,174 @@
+package Calculator_Team3;
+
+import java.util.Map;
+
+/**
+ * A function defined in the calculator language, such as {@code f(x, y) = sqrt(x² + y²)}.
+ * The body is compiled once, when the function is defined: parameters become variable
+ * slots 0, 1, ... of an argument array, other variables are replaced by their values at
+ * that time, and calls of other functions are bound to their current definitions.
+ * A function therefore only depends on its arguments, so its results can be remembered
+ * in a {@link MemoTable}; the hit and miss counts tell whether that pays off.
+ * Functions belong to the {@link EvaluationContext} they were defined in.
+ */
+public final class UserFunction {
+    // Entries of the memo table of new functions; 0 disables memoization
+    static final int MEMO_CAPACITY = Integer.getInteger("calculator.memo.capacity", 1024);
+
+    private final String name;
+    private final String parameters[];
+    private final CompiledExpression body;
+    private final CompiledFormula formula;
+    private final UserFunction callees[];
+    private final double arguments[];
+    private MemoTable memo;
+
+    /**
+     * Creates a function from its compiled body.
+     * @param name the function name
+     * @param parameters the parameter names, bound to variable slots 0, 1, ... of the body
+     * @param body the compiled body
+     * @param formula the body compiled to bytecode, or null if it is interpreted
+     * @param callees the function called by each call token of the body, by token position
+     */
+    UserFunction(String name, String[] parameters, CompiledExpression body, CompiledFormula formula,
+            UserFunction[] callees) {
+        this.name = name;
+        this.parameters = parameters;
+        this.body = body;
+        this.formula = formula;
+        this.callees = callees;
+        this.arguments = new double[parameters.length];
+        setMemoCapacity(MEMO_CAPACITY);
+    }
+
+    /**
+     * Copies the function with its own argument array and an empty memo table of the same
+     * size, so that the copy can be called while the original is being called on another thread.
+     * @param copies the functions copied so far, by original, which the copies of callees join
+     * @return the copy, calling copies of the functions this one calls
+     */
+    UserFunction copy(Map<UserFunction, UserFunction> copies) {
+        UserFunction copy = copies.get(this);
+        if (copy == null) {
+            UserFunction calls[] = new UserFunction[callees.length];
+            for (int i = 0; i < callees.length; i++) {
+                calls[i] = callees[i] != null ? callees[i].copy(copies) : null;
+            }
+            copy = new UserFunction(name, parameters, body, formula, calls);
+            copy.setMemoCapacity(memo != null ? memo.getCapacity() : 0);
+            copies.put(this, copy);
+        }
+        return copy;
+    }
+
+    /**
+     * Gets the function name.
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the parameter names.
+     * @return the parameter names in order
+     */
+    public String[] getParameters() {
+        return parameters.clone();
+    }
+
+    /**
+     * Gets the number of parameters.
+     * @return the number of arguments a call must give
+     */
+    public int getArity() {
+        return parameters.length;
+    }
+
+    /**
+     * Sets the size of the memo table, discarding the remembered results.
+     * @param capacity the number of remembered results, rounded up to a power of two;
+     *        0 disables memoization
+     */
+    public void setMemoCapacity(int capacity) {
+        memo = capacity > 0 ? new MemoTable(parameters.length, capacity) : null;
+    }
+
+    /**
+     * Gets the number of calls answered from the memo table.
+     * @return the hit count, 0 without memoization
+     */
+    public long getMemoHits() {
+        return memo != null ? memo.getHitCount() : 0;
+    }
+
+    /**
+     * Gets the number of calls that had to evaluate the body despite memoization.
+     * @return the miss count, 0 without memoization
+     */
+    public long getMemoMisses() {
+        return memo != null ? memo.getMissCount() : 0;
+    }
+
+    /**
+     * Gets the share of calls answered from the memo table.
+     * @return the hit rate from 0 to 1, 0 before the first call or without memoization
+     */
+    public double getMemoHitRate() {
+        long hits = getMemoHits(), total = hits + getMemoMisses();
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    /**
+     * Gets the compiled body.
+     * @return the body, whose variable slots are the parameter indexes
+     */
+    CompiledExpression getBody() {
+        return body;
+    }
+
+    /**
+     * Gets the body compiled to bytecode.
+     * @return the formula reading the arguments by slot, or null if the body is interpreted
+     */
+    CompiledFormula getFormula() {
+        return formula;
+    }
+
+    /**
+     * Gets the function a call token of the body is bound to.
+     * @param position the position of the call token in the postfix body
+     * @return the called function
+     */
+    UserFunction getCallee(int position) {
+        return callees[position];
+    }
+
+    /**
+     * Gets the array the arguments of a call are copied to.
+     * A function never calls itself, so one array per function is enough.
+     * @return the argument array
+     */
+    double[] getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Looks up the remembered result for the current arguments.
+     * @return the result, or NaN if it is not remembered
+     */
+    double recall() {
+        return memo != null ? memo.get(arguments) : Double.NaN;
+    }
+
+    /**
+     * Remembers the result for the current arguments.
+     * @param result the result of the body
+     */
+    void remember(double result) {
+        if (memo != null && !Double.isNaN(result)) {
+            memo.put(arguments, result);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package Calculator_Team3;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the bytes allocated per evaluation once the JIT compiler has warmed up.
+ * A compiled formula must not allocate at all; a cached {@link CalculatorLogic#valueMath(String)}
+ * call must stay under the limit given as the first argument (in bytes).
+ * Exits with status 1 if a check fails, so the bench target stops before running JMH.
+ */
+public class AllocationCheck {
+    private static final int WARMUP = 200000;
+    private static final int CALLS = 100000;
+
+    public static void main(String[] args) {
+        long limit = args.length > 0 ? Long.parseLong(args[0]) : 64;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        boolean failed = false;
+        String expressions[] = { ValueMathBenchmark.SHORT, ValueMathBenchmark.LONG, ValueMathBenchmark.TRIG,
+                ValueMathBenchmark.BITWISE };
+        for (String expression : expressions) {
+            CalculatorLogic logic = new CalculatorLogic();
+            logic.setAns(5);
+            CompiledFormula formula = logic.compileFormula(expression);
+            double variables[] = { 5 };
+            double sum = 0;
+            for (int i = 0; i < WARMUP; i++) {
+                sum += logic.valueMath(expression) + formula.evaluate(variables);
+            }
+
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < CALLS; i++) {
+                sum += logic.valueMath(expression);
+            }
+            double valueMathBytes = (threads.getThreadAllocatedBytes(thread) - before) / (double) CALLS;
+
+            before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < CALLS; i++) {
+                sum += formula.evaluate(variables);
+            }
+            double formulaBytes = (threads.getThreadAllocatedBytes(thread) - before) / (double) CALLS;
+
+            boolean ok = valueMathBytes <= limit && formulaBytes == 0;
+            failed |= !ok;
+            System.out.printf("%-4s valueMath %8.1f B/op  formula %6.1f B/op  %s  (checksum %s)%n", ok ? "ok" : "FAIL",
+                    valueMathBytes, formulaBytes, expression, sum);
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
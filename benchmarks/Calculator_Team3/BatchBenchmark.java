@@ -0,0 +1,64 @@
+package Calculator_Team3;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BatchEvaluator} with different pool sizes, to check that throughput
+ * scales with the number of cores. Half of the expressions repeat a small set of
+ * templates and half are distinct.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+    @Param({ "1", "2", "4", "8" })
+    public int parallelism;
+
+    @Param({ "100000" })
+    public int size;
+
+    private ForkJoinPool pool;
+    private BatchEvaluator evaluator;
+    private String expressions[];
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(parallelism);
+        evaluator = new BatchEvaluator(new CalculatorEngine(), pool);
+        String templates[] = { ValueMathBenchmark.SHORT, ValueMathBenchmark.LONG, ValueMathBenchmark.TRIG,
+                ValueMathBenchmark.BITWISE };
+        Random random = new Random(42);
+        expressions = new String[size];
+        for (int i = 0; i < size; i++) {
+            expressions[i] = i % 2 == 0 ? templates[random.nextInt(templates.length)]
+                    : i + "*sin(" + random.nextInt(360) + ")+" + random.nextInt(100) + "^2";
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public BatchResult evaluate() {
+        return evaluator.evaluate(expressions, 10, true, 5);
+    }
+}
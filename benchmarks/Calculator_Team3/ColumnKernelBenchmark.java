@@ -0,0 +1,69 @@
+package Calculator_Team3;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares evaluating one expression over a column of values with {@link ColumnKernel}
+ * against calling the compiled formula once per row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColumnKernelBenchmark {
+    @Param({ "ans*3+ans/2-ans*ans", "sin(ans)*ans+ans^2" })
+    public String expression;
+
+    @Param({ "100000" })
+    public int rows;
+
+    private ColumnKernel kernel;
+    private CompiledFormula formula;
+    private double columns[][];
+    private double out[];
+    private final double variables[] = new double[1];
+
+    @Setup
+    public void setUp() {
+        CalculatorEngine engine = new CalculatorEngine();
+        kernel = engine.compileKernel(expression, 10, false);
+        formula = engine.compileFormula(expression, 10, false);
+        Random random = new Random(42);
+        double column[] = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            column[i] = random.nextDouble() * 200 - 100;
+        }
+        columns = new double[][] { column };
+        out = new double[rows];
+    }
+
+    @Benchmark
+    public double[] kernel() {
+        kernel.evaluate(columns, out, 0, rows);
+        return out;
+    }
+
+    @Benchmark
+    public double[] perRow() {
+        double column[] = columns[0];
+        for (int i = 0; i < rows; i++) {
+            variables[0] = column[i];
+            out[i] = formula.evaluate(variables);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,56 @@
+package Calculator_Team3;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures decimal arithmetic against double arithmetic, for an expression whose result
+ * is an exact double and one that needs {@link BigDecimal} numbers, and the decimal
+ * arithmetic alone, without the exact double fast path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecimalBenchmark {
+    @Param({ "(12.5 * 4 + 0.25) / 8 - 3^2", "(0.1 + 0.2) * 3 - 1.1 * 1.1" })
+    public String expression;
+
+    private final CalculatorEngine engine = new CalculatorEngine();
+    private final EvaluationContext context = new EvaluationContext();
+    private CompiledExpression compiled;
+
+    @Setup
+    public void setUp() {
+        compiled = engine.compile(expression, 10, true);
+    }
+
+    @Benchmark
+    public double evaluateDouble() {
+        return engine.evaluate(expression, context);
+    }
+
+    @Benchmark
+    public BigDecimal evaluateDecimal() {
+        return engine.evaluateDecimal(expression, MathContext.DECIMAL128, context);
+    }
+
+    @Benchmark
+    public BigDecimal evaluateBigDecimalOnly() {
+        return DecimalEvaluator.evaluateDecimal(compiled.getOriginal(), MathContext.DECIMAL128, true, context);
+    }
+}
@@ -0,0 +1,57 @@
+package Calculator_Team3;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures compiling an expression after every keystroke while it is typed, with one
+ * {@link EditSession} kept between keystrokes against a new session for each of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EditSessionBenchmark {
+    @Param({ "sqrt(3.25^2 + 4.75^2) * sin(30) - ln(12.5) / (1 + 2.5e0) + 123456.789 mod 7",
+            "((1+2)*(3+4)-(5+6)/(7+8))^2 + ((9+10)*(11+12)-(13+14)/(15+16))^2" })
+    public String expression;
+
+    private final CalculatorEngine engine = new CalculatorEngine();
+    private final EditSession session = new EditSession();
+    private final EvaluationContext context = new EvaluationContext(10, false);
+
+    @Setup
+    public void setUp() {
+        engine.compile(session, "", context);
+    }
+
+    @Benchmark
+    public int typeIncrementally() {
+        int length = 0;
+        for (int i = 1; i <= expression.length(); i++) {
+            length += engine.compile(session, expression.substring(0, i), context).getPostfix().length;
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int typeFromScratch() {
+        int length = 0;
+        for (int i = 1; i <= expression.length(); i++) {
+            length += engine.compile(new EditSession(), expression.substring(0, i), context).getPostfix().length;
+        }
+        return length;
+    }
+}
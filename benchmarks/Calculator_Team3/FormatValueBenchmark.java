@@ -0,0 +1,50 @@
+package Calculator_Team3;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the radix conversions of {@link FormatValue} and the prime factorization.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormatValueBenchmark {
+    @Param({ "16", "8", "2" })
+    public int radix;
+
+    @Param({ "255", "123456.789", "-98765.4321" })
+    public double value;
+
+    private FormatValue formatValue;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        formatValue = new FormatValue();
+        text = formatValue.doubleToStringRadix(value, radix, 10);
+    }
+
+    @Benchmark
+    public double stringRadixToDouble() {
+        return formatValue.stringRadixToDouble(text, radix);
+    }
+
+    @Benchmark
+    public String doubleToStringRadix() {
+        return formatValue.doubleToStringRadix(value, radix, 10);
+    }
+}
@@ -0,0 +1,66 @@
+package Calculator_Team3;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures saving and loading the calculation history file, which the GUI
+ * rewrites after every calculation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HistoryBenchmark {
+    // The GUI keeps at most 100 entries
+    @Param({ "10", "100" })
+    public int size;
+
+    private File file;
+    private HistoryStore store;
+    private List<CalculationHistory> historyList;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("calculation_history", ".txt");
+        store = new HistoryStore(file.getPath());
+        historyList = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            historyList.add(new CalculationHistory(i + "*sin(30)+ans", Double.toString(i * 0.5), "2025-04-19 10:00:00"));
+        }
+        store.save(historyList);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public List<CalculationHistory> save() throws IOException {
+        store.save(historyList);
+        return historyList;
+    }
+
+    @Benchmark
+    public List<CalculationHistory> load() throws IOException {
+        return store.load();
+    }
+}
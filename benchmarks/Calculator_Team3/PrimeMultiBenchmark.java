@@ -0,0 +1,40 @@
+package Calculator_Team3;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link FormatValue#primeMulti(double)} on a smooth number, a semiprime and a large prime.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrimeMultiBenchmark {
+    @Param({ "3628800", "600851475143", "1000000007" })
+    public double number;
+
+    private FormatValue formatValue;
+
+    @Setup
+    public void setUp() {
+        formatValue = new FormatValue();
+    }
+
+    @Benchmark
+    public String primeMulti() {
+        return formatValue.primeMulti(number);
+    }
+}
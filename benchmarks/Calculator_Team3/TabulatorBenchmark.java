@@ -0,0 +1,58 @@
+package Calculator_Team3;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares tabulating an expression with {@link Tabulator} against calling
+ * {@link CalculatorLogic#valueMath(String)} once per point with the value in ans.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TabulatorBenchmark {
+    @Param({ "x^2-3x+1", "sin(x)*x+cos(x)/2" })
+    public String expression;
+
+    @Param({ "1000000" })
+    public int points;
+
+    private CalculatorLogic logic;
+    private String perPoint;
+
+    @Setup
+    public void setUp() {
+        logic = new CalculatorLogic();
+        logic.setDegOrRad(false);
+        perPoint = expression.replace("x", "ans");
+    }
+
+    @Benchmark
+    public double[] tabulate() {
+        return logic.tabulate(expression, "x", -10, 10, points);
+    }
+
+    @Benchmark
+    public double[] valueMathPerPoint() {
+        double results[] = new double[points];
+        double step = 20.0 / (points - 1);
+        for (int i = 0; i < points; i++) {
+            logic.setAns(-10 + i * step);
+            results[i] = logic.valueMath(perPoint);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,53 @@
+package Calculator_Team3;
+
+/**
+ * Checks that the method handle and bytecode tiers give the results of the interpreter
+ * for variables at every width of slot index the bytecode generator pushes: a constant,
+ * a byte and a short. Expressions number their own variables, so the checked variable
+ * gets its slot from the variables read before it.
+ * Exits with status 1 if a check fails, so the bench target stops before running JMH.
+ */
+public class TierCheck {
+    private static final int SLOTS[] = { 1, 5, 6, 127, 128, 1000 };
+
+    public static void main(String[] args) {
+        CalculatorEngine engine = new CalculatorEngine();
+        boolean failed = false;
+        for (int target : SLOTS) {
+            // The variables before the target are multiplied by 0 but still read, so they keep their slots
+            StringBuilder math = new StringBuilder("0 * (");
+            for (int i = 0; i < target; i++) {
+                math.append(i > 0 ? " + " : "").append(name(i));
+            }
+            math.append(") + 2 * target + 1");
+            CompiledExpression expression = engine.compile(math.toString(), 10, true);
+            double values[] = new double[expression.getSlotCount()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = i;
+            }
+            double expected = new InterpretedFormula(expression, true).evaluate(values);
+            CompiledFormula handles = MethodHandleCompiler.compile(expression, true);
+            CompiledFormula bytecode = BytecodeCompiler.compile(expression, true);
+            double handleResult = handles != null ? handles.evaluate(values) : expected;
+            double bytecodeResult = bytecode.evaluate(values);
+            boolean ok = "target".equals(expression.getVariableName(target)) && expected == 2.0 * target + 1
+                    && handleResult == expected && bytecodeResult == expected;
+            failed |= !ok;
+            System.out.printf("%-4s slot %5d  interpreter %s  method handles %s  bytecode %s%n", ok ? "ok" : "FAIL",
+                    target, expected, handleResult, bytecodeResult);
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    // A variable name of letters only, since the lexer ends a word at a digit
+    private static String name(int index) {
+        StringBuilder name = new StringBuilder("tier");
+        do {
+            name.append((char) ('a' + index % 26));
+            index /= 26;
+        } while (index > 0);
+        return name.toString();
+    }
+}
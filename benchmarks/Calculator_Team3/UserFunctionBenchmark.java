@@ -0,0 +1,47 @@
+package Calculator_Team3;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures calls of a user function whose arguments repeat, with and without its memo table.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserFunctionBenchmark {
+    @Param({ "f(n, x) = n! + sin(x)^3 + cos(x)^3 + ln(n + x)", "f(n, x) = sqrt(n² + x²)" })
+    public String definition;
+
+    @Param({ "0", "1024" })
+    public int memoCapacity;
+
+    private final CalculatorEngine engine = new CalculatorEngine();
+    private final EvaluationContext context = new EvaluationContext(10, false);
+    private int next;
+
+    @Setup
+    public void setUp() {
+        engine.evaluate(definition, context);
+        context.getFunction("f").setMemoCapacity(memoCapacity);
+    }
+
+    @Benchmark
+    public double call() {
+        context.setAns(next++ & 31); // 32 distinct arguments
+        return engine.evaluate("f(ans, 3)", context);
+    }
+}
@@ -0,0 +1,80 @@
+package Calculator_Team3;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link CalculatorLogic#valueMath(String)} for several expression shapes in every radix.
+ * The numbers only use the digits 0 and 1, so the same expressions are valid in every radix.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValueMathBenchmark {
+    static final String SHORT = "101+11*ans";
+    static final String LONG = "(1101+110)*11-1010/10+111*(ans-1)+1011*11-110/11+(10+1)*(11-1)*ans-1001";
+    static final String TRIG = "sin(1)+cos(10)*tan(11)-sin(ans)*cos(ans)+tan(110)";
+    static final String BITWISE = "(1101 and 1011 or 110 xor ans)<<11>>1 mod 111";
+
+    @Param({ "10", "16", "8", "2" })
+    public int radix;
+
+    @Param({ "short", "long", "trig", "bitwise" })
+    public String shape;
+
+    private CalculatorLogic logic;
+    private String expression;
+
+    @Setup
+    public void setUp() {
+        logic = new CalculatorLogic();
+        logic.setRadix(radix);
+        logic.setAns(5);
+        switch (shape) {
+        case "long":
+            expression = LONG;
+            break;
+        case "trig":
+            expression = TRIG;
+            break;
+        case "bitwise":
+            expression = BITWISE;
+            break;
+        default:
+            expression = SHORT;
+            break;
+        }
+    }
+
+    /**
+     * Evaluates an expression that is already in the expression cache.
+     */
+    @Benchmark
+    public double cached() {
+        logic.setError(false);
+        return logic.valueMath(expression);
+    }
+
+    /**
+     * Lexes, parses and evaluates the expression on every call.
+     */
+    @Benchmark
+    public double uncached() {
+        logic.getExpressionCache().clear();
+        logic.setError(false);
+        return logic.valueMath(expression);
+    }
+}